@@ -0,0 +1,197 @@
+package testmd.maven;
+
+import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.project.MavenProject;
+import testmd.storage.HashCache;
+import testmd.storage.SkipAnalyzer;
+import testmd.storage.TestManager;
+import testmd.util.StringUtils;
+
+import java.io.*;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Excludes test classes from the Surefire run when every permutation they contain is verified and unchanged, so they would not run any permutation anyway.
+ * See {@link testmd.storage.SkipAnalyzer} for the conditions a class must meet to be skipped. Anything ambiguous still runs.
+ * <br><br>
+ * The classes to skip are written to an excludes file and the "surefire.excludesFile" property is set to it. Existing entries from a previously configured excludes file are kept.
+ * Tests must run in bytecode hash mode: set the "hashMode" parameter or the "testmd.hashMode" property to the same value the tests use.
+ *
+ * @goal skip-verified
+ * @phase process-test-classes
+ * @requiresDependencyResolution test
+ * @threadSafe
+ */
+public class SkipVerifiedMojo extends AbstractMojo {
+
+    /**
+     * @parameter default-value="${project}"
+     * @required
+     * @readonly
+     */
+    private MavenProject project;
+
+    /**
+     * @parameter default-value="${project.testClasspathElements}"
+     * @required
+     * @readonly
+     */
+    private List<String> classpathElements;
+
+    /**
+     * Directory containing the compiled test classes to check.
+     *
+     * @parameter default-value="${project.build.testOutputDirectory}"
+     * @required
+     */
+    private File testClassesDirectory;
+
+    /**
+     * Directory the accepted files are stored in.
+     *
+     * @parameter default-value="${basedir}/src/test/resources"
+     * @required
+     */
+    private File resultsDirectory;
+
+    /**
+     * File to write the excluded classes to.
+     *
+     * @parameter default-value="${project.build.directory}/testmd-excludes.txt"
+     * @required
+     */
+    private File excludesFile;
+
+    /**
+     * Hash mode the tests run with. Classes are only skipped in BYTECODE mode.
+     *
+     * @parameter expression="${testmd.hashMode}"
+     */
+    private String hashMode;
+
+    /**
+     * Environment the tests run in.
+     *
+     * @parameter expression="${testmd.environment}"
+     */
+    private String environment;
+
+    /**
+     * Set to true to run all test classes.
+     *
+     * @parameter expression="${testmd.skipVerified.skip}" default-value="false"
+     */
+    private boolean skip;
+
+    @Override
+    public void execute() throws MojoExecutionException {
+        if (skip) {
+            getLog().info("Skipping TestMD analysis of verified test classes");
+            return;
+        }
+        if (!testClassesDirectory.exists()) {
+            getLog().debug("No test classes in " + testClassesDirectory.getAbsolutePath());
+            return;
+        }
+
+        List<String> excludes = readExistingExcludes();
+
+        try (URLClassLoader classLoader = new URLClassLoader(getClasspathUrls(), null)) {
+            SkipAnalyzer analyzer = new SkipAnalyzer(classLoader, resultsDirectory);
+            if (StringUtils.trimToNull(hashMode) != null) {
+                analyzer.setHashMode(TestManager.HashMode.valueOf(hashMode.trim().toUpperCase()));
+            }
+            if (environment != null) {
+                analyzer.setEnvironment(environment);
+            }
+
+            HashCache hashCache = new HashCache(new File(testClassesDirectory.getParentFile(), "testmd-hash-cache.properties"));
+            analyzer.setHashCache(hashCache);
+
+            List<String> skippable = analyzer.findSkippable(findTestClasses());
+            hashCache.save();
+
+            for (String className : skippable) {
+                getLog().info("Skipping " + className + ": all permutations are verified and unchanged");
+                excludes.add(className.replace(".", "/") + ".class");
+            }
+            getLog().info("TestMD skipping " + skippable.size() + " test class(es) with verified, unchanged results");
+        } catch (IOException e) {
+            throw new MojoExecutionException("Error analyzing test classes", e);
+        }
+
+        try {
+            excludesFile.getParentFile().mkdirs();
+            Files.write(excludesFile.toPath(), excludes, StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new MojoExecutionException("Cannot write " + excludesFile.getAbsolutePath(), e);
+        }
+        project.getProperties().setProperty("surefire.excludesFile", excludesFile.getAbsolutePath());
+    }
+
+    private List<String> readExistingExcludes() throws MojoExecutionException {
+        List<String> excludes = new ArrayList<>();
+        String existing = StringUtils.trimToNull(project.getProperties().getProperty("surefire.excludesFile"));
+        if (existing == null) {
+            return excludes;
+        }
+
+        File existingFile = new File(existing);
+        if (existingFile.getAbsoluteFile().equals(excludesFile.getAbsoluteFile()) || !existingFile.exists()) {
+            return excludes;
+        }
+        try {
+            excludes.addAll(Files.readAllLines(existingFile.toPath(), StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            throw new MojoExecutionException("Cannot read " + existingFile.getAbsolutePath(), e);
+        }
+        return excludes;
+    }
+
+    private URL[] getClasspathUrls() throws MojoExecutionException {
+        List<URL> urls = new ArrayList<>();
+        for (String element : classpathElements) {
+            try {
+                urls.add(new File(element).toURI().toURL());
+            } catch (MalformedURLException e) {
+                throw new MojoExecutionException("Invalid classpath element " + element, e);
+            }
+        }
+        return urls.toArray(new URL[urls.size()]);
+    }
+
+    /**
+     * Returns the top level classes in the test classes directory that have an accepted file. Other classes can never be skipped.
+     */
+    private List<String> findTestClasses() {
+        List<String> classNames = new ArrayList<>();
+        findTestClasses(testClassesDirectory, "", classNames);
+        return classNames;
+    }
+
+    private void findTestClasses(File dir, String packagePrefix, List<String> classNames) {
+        File[] files = dir.listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            String name = file.getName();
+            if (file.isDirectory()) {
+                findTestClasses(file, packagePrefix + name + ".", classNames);
+            } else if (name.endsWith(".class") && !name.contains("$")) {
+                String simpleName = name.substring(0, name.length() - ".class".length());
+                File acceptedFile = new File(new File(resultsDirectory, packagePrefix.replace(".", "/")), simpleName + ".accepted.md");
+                if (acceptedFile.exists()) {
+                    classNames.add(packagePrefix + simpleName);
+                }
+            }
+        }
+    }
+}
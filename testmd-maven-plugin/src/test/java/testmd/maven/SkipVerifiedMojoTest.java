@@ -0,0 +1,148 @@
+package testmd.maven;
+
+import org.apache.maven.model.Model;
+import org.apache.maven.project.MavenProject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import testmd.PermutationResult;
+import testmd.PreviousResults;
+import testmd.storage.BytecodeHasher;
+import testmd.storage.ResultsWriter;
+
+import javax.tools.ToolProvider;
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeNotNull;
+
+public class SkipVerifiedMojoTest {
+
+    private File directory;
+    private File testClassesDirectory;
+    private File resultsDirectory;
+    private File excludesFile;
+    private String junitJar;
+    private MavenProject project;
+
+    @Before
+    public void setup() throws Exception {
+        assumeNotNull(ToolProvider.getSystemJavaCompiler());
+
+        directory = Files.createTempDirectory("testmd-mojo").toFile();
+        testClassesDirectory = new File(directory, "test-classes");
+        resultsDirectory = new File(directory, "resources");
+        excludesFile = new File(directory, "testmd-excludes.txt");
+        junitJar = new File(Test.class.getProtectionDomain().getCodeSource().getLocation().toURI()).getAbsolutePath();
+        project = new MavenProject(new Model());
+
+        compileTestClass("VerifiedTest");
+        compileTestClass("UnverifiedTest");
+        compileTestClass("NewTest");
+
+        String hash = new BytecodeHasher(new URLClassLoader(new URL[]{testClassesDirectory.toURI().toURL()}, null)).computeHash("com.example.VerifiedTest");
+        writeAcceptedFile("VerifiedTest", hash, new PermutationResult.Verified());
+        writeAcceptedFile("UnverifiedTest", hash, new PermutationResult.Unverified("not verified yet"));
+    }
+
+    @After
+    public void cleanup() throws IOException {
+        if (directory == null) {
+            return;
+        }
+        Files.walkFileTree(directory.toPath(), new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                Files.delete(file);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(Path dir, IOException exc) throws IOException {
+                Files.delete(dir);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    @Test
+    public void verifiedClassesAreExcluded() throws Exception {
+        File existingExcludes = new File(directory, "existing-excludes.txt");
+        Files.write(existingExcludes.toPath(), Collections.singletonList("com/example/Other.class"), StandardCharsets.UTF_8);
+        project.getProperties().setProperty("surefire.excludesFile", existingExcludes.getAbsolutePath());
+
+        createMojo("BYTECODE", false).execute();
+
+        assertEquals(Arrays.asList("com/example/Other.class", "com/example/VerifiedTest.class"), Files.readAllLines(excludesFile.toPath(), StandardCharsets.UTF_8));
+        assertEquals(excludesFile.getAbsolutePath(), project.getProperties().getProperty("surefire.excludesFile"));
+    }
+
+    @Test
+    public void nothingIsExcludedOutsideBytecodeMode() throws Exception {
+        createMojo("CLASS", false).execute();
+
+        assertEquals(Collections.<String>emptyList(), Files.readAllLines(excludesFile.toPath(), StandardCharsets.UTF_8));
+        assertEquals(excludesFile.getAbsolutePath(), project.getProperties().getProperty("surefire.excludesFile"));
+    }
+
+    @Test
+    public void skipDoesNothing() throws Exception {
+        createMojo("BYTECODE", true).execute();
+
+        assertFalse(excludesFile.exists());
+        assertNull(project.getProperties().getProperty("surefire.excludesFile"));
+    }
+
+    private SkipVerifiedMojo createMojo(String hashMode, boolean skip) throws Exception {
+        SkipVerifiedMojo mojo = new SkipVerifiedMojo();
+        set(mojo, "project", project);
+        set(mojo, "classpathElements", Arrays.asList(testClassesDirectory.getAbsolutePath(), junitJar));
+        set(mojo, "testClassesDirectory", testClassesDirectory);
+        set(mojo, "resultsDirectory", resultsDirectory);
+        set(mojo, "excludesFile", excludesFile);
+        set(mojo, "hashMode", hashMode);
+        set(mojo, "skip", skip);
+        return mojo;
+    }
+
+    private void set(SkipVerifiedMojo mojo, String fieldName, Object value) throws Exception {
+        Field field = SkipVerifiedMojo.class.getDeclaredField(fieldName);
+        field.setAccessible(true);
+        field.set(mojo, value);
+    }
+
+    private void compileTestClass(String className) throws IOException {
+        File sourceFile = new File(directory, "src/com/example/" + className + ".java");
+        sourceFile.getParentFile().mkdirs();
+        List<String> source = Arrays.asList(
+                "package com.example;",
+                "public class " + className + " {",
+                "    @org.junit.Test",
+                "    public void works() {",
+                "    }",
+                "}");
+        Files.write(sourceFile.toPath(), source, StandardCharsets.UTF_8);
+
+        testClassesDirectory.mkdirs();
+        assertEquals(0, ToolProvider.getSystemJavaCompiler().run(null, null, null, "-cp", junitJar, "-d", testClassesDirectory.getAbsolutePath(), sourceFile.getAbsolutePath()));
+    }
+
+    private void writeAcceptedFile(String className, String testHash, PermutationResult result) {
+        PreviousResults results = new PreviousResults("com.example." + className, "works");
+        results.addResult(result.setParameters(Collections.singletonMap("value", "1")).setResults(Collections.singletonMap("out", "1")));
+        new ResultsWriter().write(new File(resultsDirectory, "com/example/" + className + ".accepted.md"), testHash, Collections.singletonList(results));
+    }
+}
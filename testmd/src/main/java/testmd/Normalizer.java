@@ -0,0 +1,206 @@
+package testmd;
+
+import testmd.util.StringUtils;
+
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.regex.Pattern;
+
+/**
+ * Normalizes serialized operation values before they are compared with previous runs and saved.
+ * Use normalizers to remove volatile parts of operations such as generated names, timestamps or temporary paths so they do not cause permutations to be tested again.
+ * <br><br>
+ * Normalizers are registered for a single permutation with {@link testmd.Permutation#normalizeOperations(Normalizer...)} and {@link testmd.Permutation#normalizeOperation(String, Normalizer...)},
+ * or for all permutations in a test with {@link testmd.TestBuilder#normalizeOperations(Normalizer...)} and {@link testmd.TestBuilder#normalizeOperation(String, Normalizer...)}.
+ */
+public abstract class Normalizer {
+
+    /**
+     * Collapses all runs of whitespace into a single space and trims the value.
+     */
+    public static final Normalizer WHITESPACE = new RegexNormalizer("\\s+", " ") {
+        @Override
+        public String normalize(String value) {
+            String normalized = super.normalize(value);
+            if (normalized == null) {
+                return null;
+            }
+            return normalized.trim();
+        }
+    };
+
+    /**
+     * Converts Windows and old Mac line endings to \n.
+     */
+    public static final Normalizer LINE_ENDINGS = new RegexNormalizer("\\r\\n?", "\n");
+
+    /**
+     * Returns the normalized version of the given serialized value. Null values should be returned as null.
+     */
+    public abstract String normalize(String value);
+
+    /**
+     * Creates a Normalizer replacing all matches of the given regular expression with the replacement. The replacement can reference groups with $1, $2, etc.
+     */
+    public static Normalizer replace(String regex, String replacement) {
+        return new RegexNormalizer(regex, replacement);
+    }
+
+    /**
+     * Creates a Normalizer which stores only the SHA-256 digest of the value, such as "{sha256:9f86d0...}", instead of the full value.
+     * Use it for huge operations such as generated scripts so they do not bloat the accepted file. Digests are always applied after all other normalizers.
+     */
+    public static Normalizer digest() {
+        return new DigestNormalizer(0);
+    }
+
+    /**
+     * Creates a Normalizer which stores the SHA-256 digest of the value followed by a single line preview of at most previewLength characters.
+     * Only the digests are compared with previous runs, so changing the preview length does not cause permutations to be tested again.
+     */
+    public static Normalizer digest(int previewLength) {
+        return new DigestNormalizer(previewLength);
+    }
+
+    /**
+     * Returns the "{sha256:...}" digest at the start of the given value, or null if the value was not stored by a digest normalizer.
+     */
+    public static String getDigest(String value) {
+        if (value == null || !value.startsWith(DigestNormalizer.PREFIX) || value.length() < DigestNormalizer.LENGTH || value.charAt(DigestNormalizer.LENGTH - 1) != '}') {
+            return null;
+        }
+        if (value.length() > DigestNormalizer.LENGTH && value.charAt(DigestNormalizer.LENGTH) != ' ') {
+            return null;
+        }
+        return value.substring(0, DigestNormalizer.LENGTH);
+    }
+
+    /**
+     * Normalizer which replaces the value with its SHA-256 digest and an optional preview.
+     */
+    public static class DigestNormalizer extends Normalizer {
+
+        private static final String PREFIX = "{sha256:";
+        private static final int LENGTH = PREFIX.length() + 64 + 1;
+
+        private final int previewLength;
+
+        public DigestNormalizer(int previewLength) {
+            this.previewLength = previewLength;
+        }
+
+        public int getPreviewLength() {
+            return previewLength;
+        }
+
+        @Override
+        public String normalize(String value) {
+            if (value == null || getDigest(value) != null) {
+                return value;
+            }
+
+            String digest;
+            try {
+                MessageDigest messageDigest = MessageDigest.getInstance("SHA-256");
+                digest = PREFIX + new String(StringUtils.encodeHex(messageDigest.digest(value.getBytes("UTF-8")))) + "}";
+            } catch (NoSuchAlgorithmException | UnsupportedEncodingException e) {
+                throw new RuntimeException(e);
+            }
+
+            if (previewLength <= 0) {
+                return digest;
+            }
+            return digest + " " + preview(value);
+        }
+
+        /**
+         * Returns the first previewLength characters of the value with whitespace runs collapsed to a single space and surrounding whitespace removed.
+         * Only reads as much of the value as the preview needs.
+         */
+        protected String preview(String value) {
+            StringBuilder preview = new StringBuilder(Math.min(previewLength, value.length()) + 3);
+            boolean pendingSpace = false;
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                if (isWhitespace(c)) {
+                    pendingSpace = preview.length() > 0;
+                    continue;
+                }
+                int needed = pendingSpace ? 2 : 1;
+                if (preview.length() + needed > previewLength) {
+                    if (pendingSpace && preview.length() < previewLength) {
+                        preview.append(' ');
+                    }
+                    return preview.append("...").toString();
+                }
+                if (pendingSpace) {
+                    preview.append(' ');
+                    pendingSpace = false;
+                }
+                preview.append(c);
+            }
+            return preview.toString();
+        }
+
+        private boolean isWhitespace(char c) {
+            return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o != null && o.getClass() == getClass() && ((DigestNormalizer) o).previewLength == previewLength;
+        }
+
+        @Override
+        public int hashCode() {
+            return previewLength;
+        }
+
+        @Override
+        public String toString() {
+            return "digest(" + previewLength + ")";
+        }
+    }
+
+    /**
+     * Normalizer which replaces all matches of a regular expression. The pattern is compiled once when the normalizer is created.
+     */
+    public static class RegexNormalizer extends Normalizer {
+
+        private final Pattern pattern;
+        private final String replacement;
+
+        public RegexNormalizer(String regex, String replacement) {
+            this.pattern = Pattern.compile(regex);
+            this.replacement = replacement;
+        }
+
+        @Override
+        public String normalize(String value) {
+            if (value == null) {
+                return null;
+            }
+            return pattern.matcher(value).replaceAll(replacement);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (o == null || o.getClass() != getClass()) {
+                return false;
+            }
+            RegexNormalizer that = (RegexNormalizer) o;
+            return pattern.pattern().equals(that.pattern.pattern()) && replacement.equals(that.replacement);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * pattern.pattern().hashCode() + replacement.hashCode();
+        }
+
+        @Override
+        public String toString() {
+            return "replace(" + pattern.pattern() + ", " + replacement + ")";
+        }
+    }
+}
@@ -35,7 +35,11 @@ public class Permutation {
 
     private Map<String, Value> parameters = new HashMap<String, Value>();
     private Set<String> tableParameters = new HashSet<String>();
+    private Map<String, String> parameterDefaults = new HashMap<String, String>();
     private Map<String, Value> operations = new HashMap<String, Value>();
+    private Map<String, Value> additiveOperations = new HashMap<String, Value>();
+    private Set<Normalizer> normalizers = new LinkedHashSet<Normalizer>();
+    private Map<String, Set<Normalizer>> operationNormalizers = new HashMap<String, Set<Normalizer>>();
     private Map<String, Value> notes = new HashMap<String, Value>();
 
     private Runnable setup;
@@ -44,8 +48,10 @@ public class Permutation {
     private TestManager testManager;
 
     private boolean forceRun = false;
-    private PermutationResult testResult;
+    private volatile PermutationResult testResult;
     private boolean wasRan = false;
+    private boolean reverifying = false;
+    private RunReason runReason;
 
     protected Permutation(String testGroup, String testName, Map<String, Object> parameters) {
         this.testGroup = testGroup;
@@ -76,7 +82,7 @@ public class Permutation {
     }
 
     /**
-     * Convenience method for {@link #addParameter(String, Object, ValueFormat)} using {@link testmd.ValueFormat.DefaultFormat}
+     * Convenience method for {@link #addParameter(String, Object, ValueFormat)} using {@link testmd.ValueFormat#DEFAULT}
      */
     public Permutation addParameter(String key, Object value) {
         addParameter(key, value, ValueFormat.DEFAULT);
@@ -102,11 +108,32 @@ public class Permutation {
             formattedAsTable(key);
         }
 
-        parameters.put(key, new Value(value, valueFormat));
+        Value parameterValue = new Value(value, valueFormat);
+        String defaultValue = parameterDefaults.get(key);
+        if (defaultValue != null && defaultValue.equals(parameterValue.serialize())) {
+            parameters.remove(key);
+        } else {
+            parameters.put(key, parameterValue);
+        }
         this.key = null;
         return this;
     }
 
+    /**
+     * Defines the default value of a parameter. Parameters which equal their default value are not included in the permutation, so adding a new parameter with a default does not change the key of existing permutations.
+     */
+    public Permutation setParameterDefault(String key, Object defaultValue) {
+        String serializedDefault = new Value(defaultValue, ValueFormat.DEFAULT).serialize();
+        parameterDefaults.put(key, serializedDefault);
+
+        Value currentValue = parameters.get(key);
+        if (currentValue != null && serializedDefault != null && serializedDefault.equals(currentValue.serialize())) {
+            parameters.remove(key);
+            this.key = null;
+        }
+        return this;
+    }
+
     /**
      * Returns the parameters which will be formatted as a table in storage.
      */
@@ -157,7 +184,7 @@ public class Permutation {
     }
 
     /**
-     * Convenience method for {@link #addNote(String, Object, ValueFormat)}  using {@link ValueFormat.DefaultFormat}
+     * Convenience method for {@link #addNote(String, Object, ValueFormat)}  using {@link ValueFormat#DEFAULT}
      */
     public Permutation addNote(String key, Object value) {
         addNote(key, value, ValueFormat.DEFAULT);
@@ -172,6 +199,22 @@ public class Permutation {
         return this;
     }
 
+    /**
+     * Convenience method for {@link #addNote(String, Supplier, ValueFormat)} using {@link ValueFormat#DEFAULT}
+     */
+    public Permutation addNote(String key, Supplier<?> value) {
+        addNote(key, value, ValueFormat.DEFAULT);
+        return this;
+    }
+
+    /**
+     * Adds a note to this permutation which is only computed if the results are saved.
+     */
+    public Permutation addNote(String key, Supplier<?> value, ValueFormat valueFormat) {
+        notes.put(key, new Value(value, valueFormat));
+        return this;
+    }
+
     /**
      * Returns operation you want to verify.
      * The operation to generate operations should be unit-test fast and is used to determine if the determine if the logic under test has changed how it interacts with the rest of the system.
@@ -181,7 +224,7 @@ public class Permutation {
     }
 
     /**
-     * Convenience method for {@link #addOperation(String, Object, ValueFormat)} using {@link ValueFormat.DefaultFormat}
+     * Convenience method for {@link #addOperation(String, Object, ValueFormat)} using {@link ValueFormat#DEFAULT}
      */
     public Permutation addOperation(String key, Object value) {
         addOperation(key, value, ValueFormat.DEFAULT);
@@ -196,6 +239,118 @@ public class Permutation {
         return this;
     }
 
+    /**
+     * Convenience method for {@link #addOperation(String, Supplier, ValueFormat)} using {@link ValueFormat#DEFAULT}
+     */
+    public Permutation addOperation(String key, Supplier<?> value) {
+        addOperation(key, value, ValueFormat.DEFAULT);
+        return this;
+    }
+
+    /**
+     * Adds an operation which is only computed when it is compared with previous operations or saved.
+     * Use it for operations that are expensive to generate so they are not computed for permutations that do not need them.
+     */
+    public Permutation addOperation(String key, Supplier<?> value, ValueFormat valueFormat) {
+        operations.put(key, new Value(value, valueFormat));
+        return this;
+    }
+
+    /**
+     * Returns the additive operations of this permutation. See {@link #addAdditiveOperation(String, Object, ValueFormat)}
+     */
+    public Map<String, Value> getAdditiveOperations() {
+        return additiveOperations;
+    }
+
+    /**
+     * Convenience method for {@link #addAdditiveOperation(String, Object, ValueFormat)} using {@link ValueFormat#DEFAULT}
+     */
+    public Permutation addAdditiveOperation(String key, Object value) {
+        addAdditiveOperation(key, value, ValueFormat.DEFAULT);
+        return this;
+    }
+
+    /**
+     * Adds an informational operation which is saved with the results but is not compared with previous runs.
+     * Adding, removing or changing additive operations does not cause a previously verified permutation to be tested again.
+     */
+    public Permutation addAdditiveOperation(String key, Object value, ValueFormat valueFormat) {
+        additiveOperations.put(key, new Value(value, valueFormat));
+        return this;
+    }
+
+    /**
+     * Adds normalizers applied to all operations of this permutation before they are compared with previous runs and saved.
+     */
+    public Permutation normalizeOperations(Normalizer... normalizers) {
+        if (normalizers != null) {
+            this.normalizers.addAll(Arrays.asList(normalizers));
+        }
+        return this;
+    }
+
+    /**
+     * Adds normalizers applied to the given operation before it is compared with previous runs and saved.
+     * Normalizers for specific operations are applied after normalizers added with {@link #normalizeOperations(Normalizer...)}
+     */
+    public Permutation normalizeOperation(String key, Normalizer... normalizers) {
+        if (normalizers != null) {
+            Set<Normalizer> keyNormalizers = operationNormalizers.get(key);
+            if (keyNormalizers == null) {
+                keyNormalizers = new LinkedHashSet<Normalizer>();
+                operationNormalizers.put(key, keyNormalizers);
+            }
+            keyNormalizers.addAll(Arrays.asList(normalizers));
+        }
+        return this;
+    }
+
+    /**
+     * Returns the serialized value of the given operation after all normalizers are applied.
+     * {@link testmd.Normalizer#digest()} normalizers are applied last so the digest covers the normalized value.
+     */
+    public String serializeOperation(String key, Value value) {
+        String serialized = value.serialize();
+        List<Normalizer> allNormalizers = new ArrayList<Normalizer>(normalizers);
+        Set<Normalizer> keyNormalizers = operationNormalizers.get(key);
+        if (keyNormalizers != null) {
+            allNormalizers.addAll(keyNormalizers);
+        }
+
+        Normalizer digest = null;
+        for (Normalizer normalizer : allNormalizers) {
+            if (normalizer instanceof Normalizer.DigestNormalizer) {
+                if (digest == null) {
+                    digest = normalizer;
+                }
+            } else {
+                serialized = normalizer.normalize(serialized);
+            }
+        }
+        if (digest != null) {
+            serialized = digest.normalize(serialized);
+        }
+        return serialized;
+    }
+
+    /**
+     * Returns true if the serialized operation matches the previously saved value.
+     * Digests are compared without their previews, and a full previous value matches a digest of the same value so enabling digests does not cause permutations to be tested again.
+     */
+    protected boolean operationMatches(String serialized, String previousValue) {
+        String digest = Normalizer.getDigest(serialized);
+        if (digest == null || previousValue == null) {
+            return serialized.equals(previousValue);
+        }
+
+        String previousDigest = Normalizer.getDigest(previousValue);
+        if (previousDigest == null) {
+            previousDigest = Normalizer.getDigest(Normalizer.digest().normalize(previousValue));
+        }
+        return digest.equals(previousDigest);
+    }
+
     public Permutation addOperations(Map<String, Object> operations, ValueFormat valueFormat) {
         if (operations != null) {
             for (Map.Entry<String, Object> entry : operations.entrySet()) {
@@ -271,11 +426,29 @@ public class Permutation {
             throw new RuntimeException("No TestManager set");
         }
 
+        if (testManager.isUntouched()) {
+            throw new AssumptionViolatedException("Test group " + testGroup + " is untouched by changed files");
+        }
+
+        if (testManager.isStrictFormats()) {
+            checkOrdered("Parameter", parameters);
+            checkOrdered("Operation", operations);
+        }
+
         Permutation duplicateKey = testManager.isDuplicateKey(testName, this);
         if (duplicateKey != null) {
             throw new RuntimeException("Key collision with another permutation. Make sure parameters fully differentiate all permutations.\nPermutation: " + this.toString() + "\nalso matches: " + duplicateKey.toString() + "\nwith operation " + StringUtils.join(duplicateKey.getOperations(), ",", false));
         }
         PermutationResult previousResult = testManager.getPreviousResult(testName, this);
+        if (testManager.isPlan()) {
+            if (plan(previousResult) == null) {
+                testManager.addVerifiedSignature(testName, this, true);
+            }
+            testManager.addToPlan(testName, this);
+            return;
+        }
+
+        long started = System.currentTimeMillis();
         try {
             this.setTestResult(run(verification, previousResult));
         } catch (Throwable e) {
@@ -287,11 +460,26 @@ public class Permutation {
 
             setTestResult(new PermutationResult.Failed());
             throw e;
+        } finally {
+            if (reverifying) {
+                testManager.addReverifyTime(System.currentTimeMillis() - started);
+            }
         }
     }
 
     /**
-     * Returns the "key" used to uniquely identify this permutation. The key is used to lookup previous results and to manually search & find particular permutations.
+     * Throws an exception if any of the given values contain an unordered Set or Map.
+     */
+    protected void checkOrdered(String type, Map<String, Value> values) {
+        for (Map.Entry<String, Value> entry : values.entrySet()) {
+            if (ValueFormat.containsUnordered(entry.getValue())) {
+                throw new RuntimeException(type + " '" + entry.getKey() + "' contains an unordered Set or Map. Use a sorted or linked collection instead.\n" + this.toString());
+            }
+        }
+    }
+
+    /**
+     * Returns the "key" used to uniquely identify this permutation. The key is used to lookup previous results and to manually search &amp; find particular permutations.
      */
     public String getKey() {
         if (key == null) { //store computed key for performance reasons. Must clear out key attribute whenever parameters change
@@ -332,63 +520,9 @@ public class Permutation {
         Logger log = LoggerFactory.getLogger(Permutation.class);
         log.debug("----- Running " + this.toString() + " -----");
 
-        boolean forceRun = this.forceRun;
-
-        String forceRunProperty = StringUtils.trimToNull(System.getProperty("testmd.forceRun"));
-        if (forceRunProperty == null) {
-            forceRunProperty = StringUtils.trimToNull(System.getProperty("testmd.forcerun"));
-        }
-        if (forceRunProperty != null && forceRunProperty.equalsIgnoreCase("true")) {
-            LogUtil.warnOnce(log, "Forcing execution due to testmd.forcerun=true system property");
-            forceRun = true;
-        }
-        if (testName.startsWith("!")) {
-            forceRun = true;
-            testName = testName.substring(1);
-        }
-
-        if (!forceRun && previousRun != null) {
-            String currentHash = null;
-            if (testManager != null) {
-                currentHash = testManager.getCurrentTestHash(testGroup);
-            }
-            String savedHash = previousRun.getTestHash();
-
-            if (currentHash != null && savedHash != null && !currentHash.equals(savedHash)) {
-                LogUtil.warnOnce(log, "Forcing execution of all tests in " + testGroup + " due to version/hash change");
-                forceRun = true;
-            }
-        }
-
-        if (!forceRun && previousRun != null) {
-            if (previousRun.isVerified()) {
-                log.debug("Previous test permutation run was verified");
-                boolean allEqual = true;
-                if (previousRun.getResults().size() == this.getOperations().size()) {
-                    for (Map.Entry<String, String> previousData : previousRun.getResults().entrySet()) {
-                        Value thisRunValue = this.getOperations().get(previousData.getKey());
-                        String previousValue = previousData.getValue();
-
-                        if (thisRunValue == null || !thisRunValue.serialize().equals(previousValue)) {
-                            allEqual = false;
-                            break;
-                        }
-                    }
-                } else {
-                    allEqual = false;
-                }
-                if (allEqual) {
-                    log.debug("This test permutation is unchanged since the verified permutation. Do not run again");
-
-                    return new PermutationResult.Verified(this);
-                } else {
-                    log.debug("This test permutation changed since the verified permutation. Will test again");
-                }
-            } else {
-                log.debug("Previous test permutation run was NOT verified");
-            }
-        } else if (forceRun) {
-            LogUtil.warnOnce(log, "FORCE RUN TEST");
+        PermutationResult plannedResult = plan(previousRun);
+        if (plannedResult != null) {
+            return plannedResult;
         }
 
         try {
@@ -410,10 +544,12 @@ public class Permutation {
 
                 if (!result.isValid()) {
                     log.warn("Test permutation setup is not valid: " + result.getMessage() + "\n" + toLongString(4));
-                    return new PermutationResult.Invalid(result.getMessage(), this);
+                    return cacheIfEnabled(new PermutationResult.Invalid(result.getMessage(), this));
                 } else if (!result.canVerify()) {
-                    log.debug("Cannot verify: " + result.getMessage() + "\n" + toLongString(4));
-                    return new PermutationResult.Unverified(result.getMessage(), this);
+                    if (log.isDebugEnabled()) {
+                        log.debug("Cannot verify: " + result.getMessage() + "\n" + toLongString(4));
+                    }
+                    return cacheIfEnabled(new PermutationResult.Unverified(result.getMessage(), this));
                 }
             }
         } catch (Throwable e) {
@@ -439,7 +575,7 @@ public class Permutation {
             try {
                 verification.run();
             } catch (CannotVerifyException e) {
-                return new PermutationResult.Unverified(e.getMessage(), this);
+                return cacheIfEnabled(new PermutationResult.Unverified(e.getMessage(), this));
             } catch (Throwable e) {
                 String message = (e instanceof AssertionError ? "Assertion Failed" : "Error") + " executing verification:\n" +
                         "Description: " + toString(parameters) + "\n" +
@@ -464,7 +600,152 @@ public class Permutation {
             throw new RuntimeException("Error executing cleanup", cleanupError);
         }
 
-        return new PermutationResult.Verified(this);
+        PermutationResult result = new PermutationResult.Verified(this);
+        if (testManager != null) {
+            if (testManager.isReverifyEnabled()) {
+                result.setVerifiedAt(System.currentTimeMillis());
+            }
+            testManager.addVerifiedSignature(testName, this, true);
+        }
+        return result;
+    }
+
+    /**
+     * Returns true if the operations stored in the given previous result are the same as the operations in this permutation.
+     * Additive operations are not compared.
+     */
+    protected boolean operationsMatch(PermutationResult previousRun) {
+        if (previousRun.getResults().size() != this.getOperations().size()) {
+            return false;
+        }
+        for (Map.Entry<String, String> previousData : previousRun.getResults().entrySet()) {
+            Value thisRunValue = this.getOperations().get(previousData.getKey());
+            String previousValue = previousData.getValue();
+
+            if (thisRunValue == null || !operationMatches(serializeOperation(previousData.getKey(), thisRunValue), previousValue)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns true if the given unverified or invalid previous result was cached and can be reused without running setup again.
+     * Cached results are reused only if negative result caching is enabled in the TestManager, the operations are unchanged and the cache TTL has not expired.
+     */
+    protected boolean isCacheValid(PermutationResult previousRun) {
+        if (testManager == null || !testManager.isNegativeResultCache()) {
+            return false;
+        }
+        Long cachedAt = previousRun.getCachedAt();
+        if (cachedAt == null || !operationsMatch(previousRun)) {
+            return false;
+        }
+
+        Long ttl = testManager.getNegativeResultTtl();
+        return ttl == null || System.currentTimeMillis() - cachedAt < ttl * 60 * 1000;
+    }
+
+    /**
+     * Marks the given unverified or invalid result as cached if negative result caching is enabled.
+     */
+    protected PermutationResult cacheIfEnabled(PermutationResult result) {
+        if (testManager != null && testManager.isNegativeResultCache()) {
+            result.setCachedAt(System.currentTimeMillis());
+        }
+        return result;
+    }
+
+    /**
+     * Evaluates whether this permutation needs to run, based on the previous run, forced execution, test hash and operations, and sets {@link #getRunReason()}.
+     * Returns the result to use if the permutation does not need to run, or null if setup and verification should be executed.
+     * Setup, verification and cleanup logic are never called.
+     */
+    protected PermutationResult plan(PermutationResult previousRun) {
+        Logger log = LoggerFactory.getLogger(Permutation.class);
+        boolean forceRun = this.forceRun;
+
+        String forceRunProperty = StringUtils.trimToNull(System.getProperty("testmd.forceRun"));
+        if (forceRunProperty == null) {
+            forceRunProperty = StringUtils.trimToNull(System.getProperty("testmd.forcerun"));
+        }
+        if (forceRunProperty != null && forceRunProperty.equalsIgnoreCase("true")) {
+            LogUtil.warnOnce(log, "Forcing execution due to testmd.forcerun=true system property");
+            forceRun = true;
+        }
+        if (testName.startsWith("!")) {
+            forceRun = true;
+            testName = testName.substring(1);
+        }
+        runReason = forceRun ? RunReason.FORCED : (previousRun == null ? RunReason.NEW_PERMUTATION : RunReason.NOT_VERIFIED);
+
+        boolean hashChanged = false;
+        if (!forceRun && previousRun != null) {
+            String currentHash = null;
+            if (testManager != null) {
+                currentHash = testManager.getCurrentTestHash(testGroup, testName);
+            }
+            String savedHash = previousRun.getTestHash();
+
+            if (currentHash != null && savedHash != null && !currentHash.equals(savedHash)) {
+                LogUtil.warnOnce(log, "Forcing execution of \"" + testName + "\" in " + testGroup + " due to version/hash change");
+                forceRun = true;
+                hashChanged = true;
+                runReason = RunReason.HASH_CHANGED;
+            }
+        }
+
+        if (!forceRun && previousRun != null) {
+            if (previousRun.isVerified()) {
+                log.debug("Previous test permutation run was verified");
+                boolean unchanged = operationsMatch(previousRun);
+                if (unchanged && testManager != null && testManager.shouldReverify(previousRun)) {
+                    Long verifiedAt = previousRun.getVerifiedAt();
+                    log.info("This test permutation is unchanged but was last verified " + (verifiedAt == null ? "at an unknown time" : new Date(verifiedAt).toString()) + ". Will test again");
+                    reverifying = true;
+                    runReason = RunReason.REVERIFY;
+                } else if (unchanged) {
+                    log.debug("This test permutation is unchanged since the verified permutation. Do not run again");
+
+                    if (testManager != null) {
+                        testManager.addVerifiedSignature(testName, this, false);
+                    }
+                    runReason = RunReason.UNCHANGED;
+                    return new PermutationResult.Verified(this).setVerifiedAt(previousRun.getVerifiedAt()).setVerifiedBy(previousRun.getVerifiedBy());
+                } else {
+                    log.debug("This test permutation changed since the verified permutation. Will test again");
+                    runReason = RunReason.OPERATIONS_CHANGED;
+                }
+            } else if (isCacheValid(previousRun)) {
+                log.debug("This test permutation is unchanged since it was " + (previousRun.isValid() ? "found to be unverifiable" : "skipped") + ". Do not run setup again");
+
+                PermutationResult result;
+                if (previousRun.isValid()) {
+                    result = new PermutationResult.Unverified(previousRun.getNotVerifiedMessage(), this);
+                } else {
+                    result = new PermutationResult.Invalid(previousRun.getNotVerifiedMessage(), this);
+                }
+                result.setCachedAt(previousRun.getCachedAt());
+                runReason = RunReason.CACHED;
+                return result;
+            } else {
+                log.debug("Previous test permutation run was NOT verified");
+            }
+        } else if (forceRun) {
+            LogUtil.warnOnce(log, "FORCE RUN TEST");
+        }
+
+        if ((!forceRun || hashChanged) && !reverifying && testManager != null) {
+            //a permutation whose test hash changed can only rely on permutations verified against the current code
+            String verifiedBy = testManager.findVerifiedSignature(testName, this, hashChanged);
+            if (verifiedBy != null) {
+                log.debug("A permutation with identical operations was already verified: " + verifiedBy + ". Do not run again");
+                runReason = RunReason.VERIFIED_BY_EQUIVALENT;
+                return new PermutationResult.Verified(this).setVerifiedBy(verifiedBy);
+            }
+        }
+
+        return null;
     }
 
     protected String toLongString(int indent) {
@@ -481,12 +762,22 @@ public class Permutation {
 
     protected void setTestResult(PermutationResult result) {
         this.testResult = result;
+        if (testManager != null) {
+            testManager.resultChanged(this);
+        }
     }
 
     public boolean wasRan() {
         return wasRan;
     }
 
+    /**
+     * Returns why this permutation was or was not executed, or null if it has not been ran.
+     */
+    public RunReason getRunReason() {
+        return runReason;
+    }
+
     public String formatNotVerifiedMessage(String message) {
         return message;
     }
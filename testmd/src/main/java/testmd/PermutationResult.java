@@ -11,11 +11,30 @@ import java.util.*;
  */
 public abstract class PermutationResult implements Comparable<PermutationResult> {
 
+    /**
+     * Metadata key storing when an unverified or invalid result was cached. See {@link #getCachedAt()}
+     */
+    public static final String CACHED_METADATA = "CACHED";
+
+    /**
+     * Metadata key storing when a verified result was last verified. See {@link #getVerifiedAt()}
+     */
+    public static final String VERIFIED_AT_METADATA = "VERIFIED_AT";
+
+    /**
+     * Metadata key storing which permutation with identical operations was verified in place of this result. See {@link #getVerifiedBy()}
+     */
+    public static final String VERIFIED_BY_METADATA = "VERIFIED_BY";
+
     protected String notVerifiedMessage;
     private SortedMap<String, String> parameters = new TreeMap<String, String>();
     private SortedSet<String> tableParameters = new TreeSet<String>();
     private SortedMap<String, String> results = new TreeMap<String, String>();
+    private SortedMap<String, String> additiveResults = new TreeMap<String, String>();
     private SortedMap<String, String> notes = new TreeMap<String, String>();
+    private Map<String, Value> unserializedNotes;
+    private SortedMap<String, String> metadata = new TreeMap<String, String>();
+    private Stored stored;
 
     private String key = "";
     private String tableKey = "";
@@ -37,11 +56,15 @@ public abstract class PermutationResult implements Comparable<PermutationResult>
         }
 
         for (Map.Entry<String, Value> entry : permutation.getOperations().entrySet()) {
-            results.put(entry.getKey(), entry.getValue().serialize());
+            results.put(entry.getKey(), permutation.serializeOperation(entry.getKey(), entry.getValue()));
+        }
+
+        for (Map.Entry<String, Value> entry : permutation.getAdditiveOperations().entrySet()) {
+            additiveResults.put(entry.getKey(), permutation.serializeOperation(entry.getKey(), entry.getValue()));
         }
 
-        for (Map.Entry<String, Value> entry : permutation.getNotes().entrySet()) {
-            notes.put(entry.getKey(), entry.getValue().serialize());
+        if (permutation.getNotes().size() > 0) {
+            unserializedNotes = new HashMap<String, Value>(permutation.getNotes());
         }
 
         setTableParameters(permutation.getTableParameters());
@@ -52,6 +75,7 @@ public abstract class PermutationResult implements Comparable<PermutationResult>
      * Returns the permutation uniquely-identifying parameters
      */
     public SortedMap<String, String> getParameters() {
+        materializeParameters();
         return Collections.unmodifiableSortedMap(parameters);
     }
 
@@ -59,6 +83,7 @@ public abstract class PermutationResult implements Comparable<PermutationResult>
      * Sets parameters in this result. Overwrites any existing parameters.
      */
     public PermutationResult setParameters(Map<String, String> parameters) {
+        materializeParameters();
         this.parameters.clear();
         if (parameters != null) {
             for (Map.Entry<String, String> entry : parameters.entrySet()) {
@@ -77,6 +102,7 @@ public abstract class PermutationResult implements Comparable<PermutationResult>
      * Returns the parameters to use as table columns when saving results.
      */
     public SortedSet<String> getTableParameters() {
+        materializeParameters();
         return tableParameters;
     }
 
@@ -84,6 +110,7 @@ public abstract class PermutationResult implements Comparable<PermutationResult>
      * Sets the parameters to use as table parameters in this result. Overwrites any existing settings.
      */
     public PermutationResult setTableParameters(Set<String> parameters) {
+        materializeParameters();
         this.tableParameters.clear();
         if (parameters != null) {
             for (String entry : parameters) {
@@ -99,9 +126,16 @@ public abstract class PermutationResult implements Comparable<PermutationResult>
     }
 
     /**
-     * Gets the notes associated with this permutation.
+     * Gets the notes associated with this permutation. Notes of a result created from a {@link testmd.Permutation} are serialized the first time they are requested.
      */
     public SortedMap<String, String> getNotes() {
+        materializeNotes();
+        if (unserializedNotes != null) {
+            for (Map.Entry<String, Value> entry : unserializedNotes.entrySet()) {
+                notes.put(entry.getKey(), entry.getValue().serialize());
+            }
+            unserializedNotes = null;
+        }
         return notes;
     }
 
@@ -109,6 +143,8 @@ public abstract class PermutationResult implements Comparable<PermutationResult>
      * Sets the notes associated with this permutation. Overwrites any existing settings.
      */
     public PermutationResult setNotes(Map<String, String> notes) {
+        materializeNotes();
+        this.unserializedNotes = null;
         this.notes.clear();
         if (notes != null) {
             for (Map.Entry<String, String> entry : notes.entrySet()) {
@@ -125,6 +161,7 @@ public abstract class PermutationResult implements Comparable<PermutationResult>
      * Returns the "results" associated with this permutation
      */
     public SortedMap<String, String> getResults() {
+        materializeResults();
         return results;
     }
 
@@ -132,6 +169,7 @@ public abstract class PermutationResult implements Comparable<PermutationResult>
      * Sets the "results" in this result. Overwrites any existing settings.
      */
     public PermutationResult setResults(Map<String, String> results) {
+        materializeResults();
         this.results.clear();
         if (results != null) {
             for (Map.Entry<String, String> entry : results.entrySet()) {
@@ -144,6 +182,115 @@ public abstract class PermutationResult implements Comparable<PermutationResult>
         return this;
     }
 
+    /**
+     * Returns the "results" of additive operations associated with this permutation. They are stored but not compared with later runs.
+     */
+    public SortedMap<String, String> getAdditiveResults() {
+        materializeAdditiveResults();
+        return additiveResults;
+    }
+
+    /**
+     * Sets the additive "results" in this result. Overwrites any existing settings.
+     */
+    public PermutationResult setAdditiveResults(Map<String, String> additiveResults) {
+        materializeAdditiveResults();
+        this.additiveResults.clear();
+        if (additiveResults != null) {
+            for (Map.Entry<String, String> entry : additiveResults.entrySet()) {
+                if (entry.getValue() != null) {
+                    this.additiveResults.put(entry.getKey(), entry.getValue());
+                }
+            }
+        }
+
+        return this;
+    }
+
+    /**
+     * Returns internal TestMD information stored about this result, such as when it was cached.
+     */
+    public SortedMap<String, String> getMetadata() {
+        materializeMetadata();
+        return metadata;
+    }
+
+    /**
+     * Sets the metadata associated with this result. Overwrites any existing settings.
+     */
+    public PermutationResult setMetadata(Map<String, String> metadata) {
+        materializeMetadata();
+        this.metadata.clear();
+        if (metadata != null) {
+            for (Map.Entry<String, String> entry : metadata.entrySet()) {
+                if (entry.getValue() != null) {
+                    this.metadata.put(entry.getKey(), entry.getValue());
+                }
+            }
+        }
+
+        return this;
+    }
+
+    /**
+     * Returns the time in milliseconds this unverified or invalid result was first saved so it can be reused without running setup again.
+     * Returns null if the result is not cached.
+     */
+    public Long getCachedAt() {
+        String cached = getMetadata().get(CACHED_METADATA);
+        if (cached == null) {
+            return null;
+        }
+        return Long.valueOf(cached);
+    }
+
+    public PermutationResult setCachedAt(Long cachedAt) {
+        if (cachedAt == null) {
+            getMetadata().remove(CACHED_METADATA);
+        } else {
+            getMetadata().put(CACHED_METADATA, String.valueOf(cachedAt));
+        }
+        return this;
+    }
+
+    /**
+     * Returns the time in milliseconds this result was last verified by running the verification logic.
+     * Returns null if the time was not recorded.
+     */
+    public Long getVerifiedAt() {
+        String verifiedAt = getMetadata().get(VERIFIED_AT_METADATA);
+        if (verifiedAt == null) {
+            return null;
+        }
+        return Long.valueOf(verifiedAt);
+    }
+
+    public PermutationResult setVerifiedAt(Long verifiedAt) {
+        if (verifiedAt == null) {
+            getMetadata().remove(VERIFIED_AT_METADATA);
+        } else {
+            getMetadata().put(VERIFIED_AT_METADATA, String.valueOf(verifiedAt));
+        }
+        return this;
+    }
+
+    /**
+     * Returns a description of the permutation with identical operations whose verification this result relies on.
+     * Returns null if this result was verified on its own.
+     */
+    public String getVerifiedBy() {
+        return getMetadata().get(VERIFIED_BY_METADATA);
+    }
+
+    public PermutationResult setVerifiedBy(String verifiedBy) {
+        if (verifiedBy == null) {
+            getMetadata().remove(VERIFIED_BY_METADATA);
+        } else {
+            getMetadata().put(VERIFIED_BY_METADATA, verifiedBy);
+        }
+        return this;
+    }
+
     /**
      * Returns true if this permutation result was correctly verified.
      */
@@ -190,6 +337,9 @@ public abstract class PermutationResult implements Comparable<PermutationResult>
      * Key used to uniquely identify each table when writing results to disk. Based on the values in the columns in {@link #getTableParameters()}
      */
     public String getTableKey() {
+        if (tableKey == null) {
+            recomputeTableKey();
+        }
         return tableKey;
     }
 
@@ -197,6 +347,16 @@ public abstract class PermutationResult implements Comparable<PermutationResult>
      * Recomputes key and tableKey and stores them for faster performance.
      */
     protected void recomputeKey() {
+        recomputeTableKey();
+        if (parameters.size() == 0) {
+            key = "";
+        } else {
+            key = StringUtils.computeKey(parameters);
+        }
+    }
+
+    private void recomputeTableKey() {
+        materializeParameters();
         if (tableParameters != null && tableParameters.size() > 0) {
             Map<String, String> tableDescription = new TreeMap<String, String>();
             for (Map.Entry<String, String> rowEntry : parameters.entrySet()) {
@@ -209,10 +369,88 @@ public abstract class PermutationResult implements Comparable<PermutationResult>
         } else {
             tableKey = "";
         }
-        if (parameters.size() == 0) {
-            key = "";
+    }
+
+    /**
+     * Sets the values of a result read from storage, along with the key stored for it.
+     * The given maps are kept as they are and only copied into sorted maps the first time they are requested, and the stored key is used instead of computing it from the parameters.
+     * The maps must not be modified afterwards.
+     */
+    public PermutationResult setStoredValues(String key, Map<String, String> parameters, Set<String> tableParameters, Map<String, String> notes, Map<String, String> results, Map<String, String> additiveResults, Map<String, String> metadata) {
+        synchronized (this) {
+            this.parameters.clear();
+            this.tableParameters.clear();
+            this.notes.clear();
+            this.unserializedNotes = null;
+            this.results.clear();
+            this.additiveResults.clear();
+            this.metadata.clear();
+
+            this.stored = new Stored();
+            stored.parameters = parameters;
+            stored.tableParameters = tableParameters;
+            stored.notes = notes;
+            stored.results = results;
+            stored.additiveResults = additiveResults;
+            stored.metadata = metadata;
+        }
+        this.tableKey = null;
+        if (key == null) {
+            recomputeKey();
         } else {
-            key = StringUtils.computeKey(parameters);
+            this.key = key;
+        }
+        return this;
+    }
+
+    private synchronized void materializeParameters() {
+        if (stored != null && stored.parameters != null) {
+            copyValues(stored.parameters, parameters);
+            if (stored.tableParameters != null) {
+                for (String tableParameter : stored.tableParameters) {
+                    if (tableParameter != null) {
+                        tableParameters.add(tableParameter);
+                    }
+                }
+            }
+            stored.parameters = null;
+            stored.tableParameters = null;
+        }
+    }
+
+    private synchronized void materializeNotes() {
+        if (stored != null && stored.notes != null) {
+            copyValues(stored.notes, notes);
+            stored.notes = null;
+        }
+    }
+
+    private synchronized void materializeResults() {
+        if (stored != null && stored.results != null) {
+            copyValues(stored.results, results);
+            stored.results = null;
+        }
+    }
+
+    private synchronized void materializeAdditiveResults() {
+        if (stored != null && stored.additiveResults != null) {
+            copyValues(stored.additiveResults, additiveResults);
+            stored.additiveResults = null;
+        }
+    }
+
+    private synchronized void materializeMetadata() {
+        if (stored != null && stored.metadata != null) {
+            copyValues(stored.metadata, metadata);
+            stored.metadata = null;
+        }
+    }
+
+    private static void copyValues(Map<String, String> from, Map<String, String> to) {
+        for (Map.Entry<String, String> entry : from.entrySet()) {
+            if (entry.getValue() != null) {
+                to.put(entry.getKey(), entry.getValue());
+            }
         }
     }
 
@@ -225,6 +463,18 @@ public abstract class PermutationResult implements Comparable<PermutationResult>
         return i;
     }
 
+    /**
+     * Values read from storage that have not been copied into the sorted maps yet.
+     */
+    private static class Stored {
+        private Map<String, String> parameters;
+        private Set<String> tableParameters;
+        private Map<String, String> notes;
+        private Map<String, String> results;
+        private Map<String, String> additiveResults;
+        private Map<String, String> metadata;
+    }
+
     /**
      * Base class for all Valid results.
      */
@@ -291,6 +541,7 @@ public abstract class PermutationResult implements Comparable<PermutationResult>
 
     /**
      * Results for permutations that are invalid and should be skipped.
+     * Invalid results are only written to the results file if they are cached. See {@link #getCachedAt()}
      */
     public static class Invalid extends PermutationResult {
 
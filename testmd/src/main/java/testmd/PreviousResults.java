@@ -6,6 +6,8 @@ public class PreviousResults {
 
     private final String testClass;
     private final String testName;
+    private String testHash;
+    private String environment;
 
     private Map<String, PermutationResult> results = new HashMap<>();
 
@@ -22,6 +24,28 @@ public class PreviousResults {
         return testName;
     }
 
+    /**
+     * Returns the hash of the test method these results were saved with, or null if results were saved with only a test group hash.
+     */
+    public String getTestHash() {
+        return testHash;
+    }
+
+    public void setTestHash(String testHash) {
+        this.testHash = testHash;
+    }
+
+    /**
+     * Returns the environment these results were saved for, or null if they were not saved for a specific environment.
+     */
+    public String getEnvironment() {
+        return environment;
+    }
+
+    public void setEnvironment(String environment) {
+        this.environment = environment;
+    }
+
     public void addResult(PermutationResult result) {
         this.results.put(result.getKey(), result);
     }
@@ -0,0 +1,37 @@
+package testmd;
+
+/**
+ * Describes why a {@link testmd.Permutation} was or was not executed. See {@link testmd.Permutation#getRunReason()}
+ */
+public enum RunReason {
+
+    NEW_PERMUTATION(true, "New permutation"),
+    FORCED(true, "Forced to run"),
+    HASH_CHANGED(true, "Test version/hash changed"),
+    OPERATIONS_CHANGED(true, "Operations changed since last verification"),
+    NOT_VERIFIED(true, "Previous result was not verified"),
+    REVERIFY(true, "Selected to verify again"),
+
+    UNCHANGED(false, "Unchanged since last verification"),
+    CACHED(false, "Cached skipped or unverifiable result"),
+    VERIFIED_BY_EQUIVALENT(false, "Permutation with identical operations already verified");
+
+    private final boolean run;
+    private final String description;
+
+    RunReason(boolean run, String description) {
+        this.run = run;
+        this.description = description;
+    }
+
+    /**
+     * Returns true if setup and verification logic are executed for this reason.
+     */
+    public boolean isRun() {
+        return run;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+}
@@ -0,0 +1,78 @@
+package testmd;
+
+import testmd.storage.TestManager;
+
+import java.util.Map;
+
+public class TestBuilder {
+    private String testGroup;
+    private String testName;
+    private TestManager testManager;
+
+    public TestBuilder(String testGroup, String testName, TestManager testManager) {
+        this.testGroup = testGroup;
+        this.testName = testName;
+        this.testManager = testManager;
+    }
+
+    public String getTestName() {
+        return testName;
+    }
+
+    /**
+     * Adds normalizers applied to all operations of all permutations in this test. See {@link testmd.Permutation#normalizeOperations(Normalizer...)}
+     */
+    public TestBuilder normalizeOperations(Normalizer... normalizers) {
+        testManager.addNormalizers(testName, null, normalizers);
+        return this;
+    }
+
+    /**
+     * Adds normalizers applied to the given operation in all permutations in this test. See {@link testmd.Permutation#normalizeOperation(String, Normalizer...)}
+     */
+    public TestBuilder normalizeOperation(String key, Normalizer... normalizers) {
+        testManager.addNormalizers(testName, key, normalizers);
+        return this;
+    }
+
+    /**
+     * Defines that a parameter used to be saved as previousName. Previously saved results are migrated to the new name so renaming a parameter does not cause permutations to run again.
+     */
+    public TestBuilder withParameterAlias(String previousName, String name) {
+        testManager.addParameterAlias(testName, previousName, name);
+        return this;
+    }
+
+    /**
+     * Defines the default value of a parameter for all permutations in this test. See {@link testmd.Permutation#setParameterDefault(String, Object)}
+     * Previously saved results are migrated so adding a parameter with a default value does not cause permutations to run again.
+     */
+    public TestBuilder withParameterDefault(String name, Object defaultValue) {
+        testManager.addParameterDefault(testName, name, defaultValue);
+        return this;
+    }
+
+    /**
+     * Creates and configures a new permutation with no parameters.
+     */
+    public Permutation withPermutation() throws Exception {
+        return withPermutation((Map<String, Object>) null);
+    }
+
+    /**
+     * Creates and configures a new permutation which is populated with the map values as parameters.
+     */
+    public Permutation withPermutation(Map<String, Object> parameters) throws Exception {
+        return withPermutation(new Permutation(testGroup, testName, parameters));
+    }
+
+    /**
+     * Registers a custom subclassed {@link testmd.Permutation} with TestMD.
+     */
+    public Permutation withPermutation(Permutation permutation) throws Exception {
+        testManager.addPermutation(testName, permutation);
+
+        return permutation;
+    }
+
+}
@@ -1,5 +1,6 @@
 package testmd;
 
+import testmd.storage.ResultsFlusher;
 import testmd.storage.ResultsReader;
 import testmd.storage.ResultsWriter;
 import testmd.storage.TestManager;
@@ -100,6 +101,13 @@ public class TestMD {
         return new TestManager(testGroup, inSameClassRoot, resultsReader, resultsWriter);
     }
 
+    /**
+     * Writes all pending results now instead of waiting for the JVM shutdown hook. Returns true if all results were written before the timeout.
+     */
+    public static boolean flushResults() {
+        return ResultsFlusher.getInstance().flush();
+    }
+
     public static void setResultsReader(ResultsReader resultsReader) {
         TestMD.resultsReader = resultsReader;
     }
@@ -0,0 +1,66 @@
+package testmd;
+
+import testmd.logic.Supplier;
+
+/**
+ * Container storing an object value plus an {@link ValueFormat} to control how the object is {@link #serialize()}-ed when saved with {@link testmd.storage.ResultsWriter}
+ * <br><br>
+ * Values created from a {@link testmd.logic.Supplier} are computed the first time they are used and the result is reused after that.
+ */
+public class Value {
+    private Object value;
+    private Supplier<?> supplier;
+    private ValueFormat format;
+
+    /**
+     * Constructs new Value object. If format is null, defaults to {@link ValueFormat#DEFAULT}
+     */
+    public Value(Object value, ValueFormat format) {
+        this.value = value;
+        this.format = format;
+        if (this.format == null) {
+            this.format = ValueFormat.DEFAULT;
+        }
+    }
+
+    /**
+     * Constructs a new Value computed by the given supplier the first time it is needed. If format is null, defaults to {@link ValueFormat#DEFAULT}
+     */
+    public Value(Supplier<?> supplier, ValueFormat format) {
+        this((Object) null, format);
+        this.supplier = supplier;
+    }
+
+    /**
+     * Returns the raw object stored in this Value, computing it if it was created from a supplier that has not been called yet.
+     */
+    public synchronized Object getValue() {
+        if (supplier != null) {
+            value = supplier.get();
+            supplier = null;
+        }
+        return value;
+    }
+
+    /**
+     * Returns false if this value was created from a supplier that has not been called yet.
+     */
+    public synchronized boolean isComputed() {
+        return supplier == null;
+    }
+
+    /**
+     * Returns the value stored in this object, formatted by the assigned {@link ValueFormat}
+     */
+    public String serialize() {
+        return format.format(getValue());
+    }
+
+    /**
+     * Calls {@link #serialize()}
+     */
+    @Override
+    public String toString() {
+        return serialize();
+    }
+}
@@ -0,0 +1,240 @@
+package testmd;
+
+import testmd.util.StringUtils;
+
+import java.util.*;
+
+public abstract class ValueFormat {
+
+
+    public static final ValueFormat DEFAULT = new ValueFormat.DefaultFormat();
+
+    public abstract String format(Object value);
+
+    /**
+     * Returns true if the given value is a Set or Map whose iteration order is not defined, such as a HashSet or HashMap.
+     * Sorted and insertion-ordered (Linked) implementations are not considered unordered.
+     */
+    public static boolean isUnordered(Object value) {
+        if (value instanceof Set) {
+            return !(value instanceof SortedSet || value instanceof LinkedHashSet);
+        }
+        if (value instanceof Map) {
+            return !(value instanceof SortedMap || value instanceof LinkedHashMap);
+        }
+        return false;
+    }
+
+    /**
+     * Returns true if the given value or any value nested in it through collections, arrays or maps {@link #isUnordered(Object)}
+     */
+    public static boolean containsUnordered(Object value) {
+        if (value instanceof Value) {
+            return containsUnordered(((Value) value).getValue());
+        }
+        if (isUnordered(value)) {
+            return true;
+        }
+        if (value instanceof Object[]) {
+            return containsUnordered(Arrays.asList((Object[]) value));
+        }
+        if (value instanceof Collection) {
+            for (Object item : (Collection<?>) value) {
+                if (containsUnordered(item)) {
+                    return true;
+                }
+            }
+        }
+        if (value instanceof Map) {
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                if (containsUnordered(entry.getKey()) || containsUnordered(entry.getValue())) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the values in a canonical order that does not depend on the order they are passed in. Values are ordered by class name first,
+     * then by their natural order if they are comparable, then by their formatted value. Nulls are sorted last.
+     * Unlike a TreeSet, values which compare as equal are all kept.
+     */
+    protected static <T> List<T> sort(Collection<T> values, final ValueFormat format) {
+        List<T> sorted = new ArrayList<>(values);
+        Collections.sort(sorted, new Comparator<T>() {
+            @Override
+            public int compare(T o1, T o2) {
+                if (o1 == null || o2 == null) {
+                    return o1 == null ? (o2 == null ? 0 : 1) : -1;
+                }
+                int i = o1.getClass().getName().compareTo(o2.getClass().getName());
+                if (i == 0 && o1 instanceof Comparable && o1.getClass().equals(o2.getClass())) {
+                    i = compareNatural(o1, o2);
+                }
+                if (i == 0) {
+                    i = String.valueOf(format.format(o1)).compareTo(String.valueOf(format.format(o2)));
+                }
+                return i;
+            }
+        });
+        return sorted;
+    }
+
+    /**
+     * Compares two values of the same comparable class.
+     */
+    @SuppressWarnings("unchecked")
+    private static int compareNatural(Object value, Object other) {
+        return ((Comparable<Object>) value).compareTo(other);
+    }
+
+    private static class DefaultFormat extends ValueFormat {
+
+        private final ArrayFormat ARRAY = new ArrayFormat(this);
+        private final CollectionFormat COLLECTION = new CollectionFormat(this);
+        private final CollectionFormat SORTED_COLLECTION = new CollectionFormat(this, true);
+        private final MapFormat MAP = new MapFormat(this);
+        private final MapFormat SORTED_MAP = new MapFormat(this, true);
+
+        @Override
+        public String format(Object value) {
+            if (value == null) {
+                return null;
+            }
+
+            if (value instanceof Class) {
+                return ((Class) value).getName();
+            }
+
+            if (value instanceof Object[]) {
+                return ARRAY.format(value);
+            }
+
+            if (value instanceof Collection) {
+                return isUnordered(value) ? SORTED_COLLECTION.format(value) : COLLECTION.format(value);
+            }
+
+            if (value instanceof Map) {
+                if (isUnordered(value)) {
+                    return SORTED_MAP.format(value);
+                }
+                //ordered maps keep their toString() format so stored keys do not change, unless it would depend on the iteration order of a nested value
+                return containsUnordered(value) ? MAP.format(value) : value.toString();
+            }
+
+            if (value instanceof Value) {
+                return ((Value) value).serialize();
+            }
+
+            return value.toString();
+        }
+    }
+
+    public static class ArrayFormat extends ValueFormat {
+
+        private StringUtils.JoinFormat joinFormat;
+
+        public ArrayFormat(final ValueFormat joinFormat) {
+            this.joinFormat = new StringUtils.JoinFormat() {
+                @Override
+                public String toString(Object obj) {
+                    return joinFormat.format(obj);
+                }
+            };
+        }
+
+        @Override
+        public String format(Object value) {
+            if (value == null) {
+                return null;
+            }
+
+            return StringUtils.join(Arrays.asList((Object[]) value), ", ", joinFormat, false);
+        }
+    }
+
+    public static class CollectionFormat extends ValueFormat {
+
+        private StringUtils.JoinFormat joinFormat;
+        private ValueFormat valueFormat;
+        private boolean sorted;
+
+        public CollectionFormat(final ValueFormat joinFormat) {
+            this(joinFormat, false);
+        }
+
+        /**
+         * Creates a CollectionFormat which formats items with the given joinFormat. If sorted is true, items are sorted so the output does not depend on iteration order.
+         */
+        public CollectionFormat(final ValueFormat joinFormat, boolean sorted) {
+            this.joinFormat = new StringUtils.JoinFormat() {
+                @Override
+                public String toString(Object obj) {
+                    return joinFormat.format(obj);
+                }
+            };
+            this.valueFormat = joinFormat;
+            this.sorted = sorted;
+        }
+
+        @Override
+        public String format(Object value) {
+            if (value == null) {
+                return null;
+            }
+            Collection<?> collection = (Collection<?>) value;
+            if (sorted) {
+                collection = sort(collection, valueFormat);
+            }
+            return StringUtils.join(collection, ", ", joinFormat, false);
+        }
+    }
+
+    /**
+     * Formats maps as {key=value, key=value} using the given format for keys and values.
+     * Collections and arrays used as keys or values are wrapped in [] like {@link AbstractMap#toString()} does, so their items cannot be confused with map entries.
+     */
+    public static class MapFormat extends ValueFormat {
+
+        private ValueFormat valueFormat;
+        private boolean sorted;
+
+        public MapFormat(final ValueFormat valueFormat) {
+            this(valueFormat, false);
+        }
+
+        /**
+         * Creates a MapFormat which formats keys and values with the given valueFormat. If sorted is true, entries are sorted by key so the output does not depend on iteration order.
+         */
+        public MapFormat(final ValueFormat valueFormat, boolean sorted) {
+            this.valueFormat = valueFormat;
+            this.sorted = sorted;
+        }
+
+        @Override
+        public String format(Object value) {
+            if (value == null) {
+                return null;
+            }
+            Map<?, ?> map = (Map<?, ?>) value;
+            Collection<?> keys = map.keySet();
+            if (sorted) {
+                keys = sort(keys, valueFormat);
+            }
+
+            List<String> entries = new ArrayList<>();
+            for (Object key : keys) {
+                entries.add(formatEntryPart(key) + "=" + formatEntryPart(map.get(key)));
+            }
+            return "{" + StringUtils.join(entries, ", ", false) + "}";
+        }
+
+        protected String formatEntryPart(Object value) {
+            if (value instanceof Collection || value instanceof Object[]) {
+                return "[" + valueFormat.format(value) + "]";
+            }
+            return valueFormat.format(value);
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package testmd.junit;
+
+import org.junit.rules.TestWatcher;
+import org.junit.runner.Description;
+import testmd.Normalizer;
+import testmd.Permutation;
+import testmd.TestMD;
+
+import java.util.Map;
+
+public class TestMDRule extends TestWatcher {
+
+    private String testClassName;
+    private String testName;
+    private Class<?> inSameRootAs;
+
+    @Override
+    protected void starting(Description description) {
+        inSameRootAs = description.getTestClass();
+        testClassName = inSameRootAs.getName();
+        testName = description.getMethodName();
+
+    }
+
+    public Permutation permutation(Map<String, Object> parameters) throws Exception {
+        return TestMD.test(testClassName, testName, inSameRootAs).withPermutation(parameters);
+    }
+
+    public Permutation permutation() throws Exception {
+        return TestMD.test(testClassName, testName, inSameRootAs).withPermutation();
+    }
+
+    /**
+     * Adds normalizers applied to all operations of permutations in the current test. See {@link testmd.TestBuilder#normalizeOperations(Normalizer...)}
+     */
+    public TestMDRule normalizeOperations(Normalizer... normalizers) {
+        TestMD.test(testClassName, testName, inSameRootAs).normalizeOperations(normalizers);
+        return this;
+    }
+
+    /**
+     * Adds normalizers applied to the given operation of permutations in the current test. See {@link testmd.TestBuilder#normalizeOperation(String, Normalizer...)}
+     */
+    public TestMDRule normalizeOperation(String key, Normalizer... normalizers) {
+        TestMD.test(testClassName, testName, inSameRootAs).normalizeOperation(key, normalizers);
+        return this;
+    }
+
+    /**
+     * Defines a previous name of a parameter in the current test. See {@link testmd.TestBuilder#withParameterAlias(String, String)}
+     */
+    public TestMDRule parameterAlias(String previousName, String name) {
+        TestMD.test(testClassName, testName, inSameRootAs).withParameterAlias(previousName, name);
+        return this;
+    }
+
+    /**
+     * Defines the default value of a parameter in the current test. See {@link testmd.TestBuilder#withParameterDefault(String, Object)}
+     */
+    public TestMDRule parameterDefault(String name, Object defaultValue) {
+        TestMD.test(testClassName, testName, inSameRootAs).withParameterDefault(name, defaultValue);
+        return this;
+    }
+}
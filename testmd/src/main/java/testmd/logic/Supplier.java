@@ -0,0 +1,9 @@
+package testmd.logic;
+
+/**
+ * Interface to compute a value only when it is needed, such as an operation or note passed to {@link testmd.Permutation#addOperation(String, Supplier)} or {@link testmd.Permutation#addNote(String, Supplier)}.
+ * The value is computed at most once.
+ */
+public interface Supplier<T> {
+    public T get();
+}
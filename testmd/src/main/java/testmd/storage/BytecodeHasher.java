@@ -0,0 +1,600 @@
+package testmd.storage;
+
+import testmd.util.StringUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.security.MessageDigest;
+import java.util.*;
+
+/**
+ * Computes hashes of compiled classes for {@link testmd.storage.TestManager.HashMode#BYTECODE}.
+ * The hash of a class covers its bytecode with debug attributes (line numbers, local variable names, source file) removed,
+ * plus the bytecode of all classes it transitively references that are loaded from a directory rather than a jar.
+ * Recompiling unchanged code, reformatting or renaming local variables does not change the hash, but changes to helper or production classes the test depends on do.
+ * <br><br>
+ * Groovy stores the compile time in every class as the name of a synthetic "__timeStamp__239_neverHappen&lt;millis&gt;" field and as a long constant the static initializer assigns to "__timeStamp".
+ * Those constants are left out of the hash so recompiling unchanged Groovy and Spock classes does not change it either.
+ */
+public class BytecodeHasher {
+
+    private static final Set<String> DEBUG_ATTRIBUTES = new HashSet<>(Arrays.asList(
+            "LineNumberTable", "LocalVariableTable", "LocalVariableTypeTable", "SourceFile", "SourceDebugExtension"));
+
+    private static final Set<String> ANNOTATION_ATTRIBUTES = new HashSet<>(Arrays.asList(
+            "RuntimeVisibleAnnotations", "RuntimeInvisibleAnnotations"));
+
+    private static final Set<String> PARAMETER_ANNOTATION_ATTRIBUTES = new HashSet<>(Arrays.asList(
+            "RuntimeVisibleParameterAnnotations", "RuntimeInvisibleParameterAnnotations"));
+
+    /**
+     * Kind of the values stored in the {@link testmd.storage.HashCache}. Changed whenever the digest computation changes, so digests cached by older versions are not used.
+     */
+    private static final String CACHE_KIND = "bytecode-2";
+
+    private static final String GROOVY_TIMESTAMP_FIELD = "__timeStamp";
+    private static final String GROOVY_TIMESTAMP_NAME_FIELD = "__timeStamp__239_neverHappen";
+
+    private static final int LDC2_W = 0x14;
+    private static final int PUTSTATIC = 0xb3;
+    private static final int TABLESWITCH = 0xaa;
+    private static final int LOOKUPSWITCH = 0xab;
+    private static final int WIDE = 0xc4;
+    private static final int IINC = 0x84;
+
+    private final ClassLoader classLoader;
+    private final Map<String, ClassHash> classHashes = new HashMap<>();
+    private HashCache hashCache;
+
+    public BytecodeHasher(ClassLoader classLoader) {
+        this.classLoader = classLoader;
+    }
+
+    /**
+     * Sets a cache used to avoid re-reading class files that have not changed.
+     */
+    public void setHashCache(HashCache hashCache) {
+        this.hashCache = hashCache;
+    }
+
+    /**
+     * Returns a short hash of the given class and its in-project dependencies. Returns null if the class is not found in a class directory.
+     */
+    public synchronized String computeHash(String className) {
+        SortedMap<String, String> digests = collectDigests(className);
+        if (digests == null) {
+            return null;
+        }
+
+        StringBuilder combined = new StringBuilder();
+        for (Map.Entry<String, String> entry : digests.entrySet()) {
+            combined.append(entry.getKey()).append(":").append(entry.getValue()).append("\n");
+        }
+        return StringUtils.computeHash(combined.toString()).substring(0, 6);
+    }
+
+    /**
+     * Returns the internal names (com/example/Name) of the given class and all in-project classes it transitively references.
+     * Returns null if the class is not found in a class directory.
+     */
+    public synchronized SortedSet<String> findDependencies(String className) {
+        SortedMap<String, String> digests = collectDigests(className);
+        if (digests == null) {
+            return null;
+        }
+        return new TreeSet<>(digests.keySet());
+    }
+
+    private SortedMap<String, String> collectDigests(String className) {
+        SortedMap<String, String> digests = new TreeMap<>();
+        Deque<String> toCheck = new ArrayDeque<>();
+        toCheck.add(className.replace('.', '/'));
+
+        while (!toCheck.isEmpty()) {
+            String name = toCheck.pop();
+            if (digests.containsKey(name)) {
+                continue;
+            }
+            ClassHash classHash = getClassHash(name);
+            if (classHash == null) {
+                if (digests.isEmpty()) {
+                    return null;
+                }
+                continue;
+            }
+            digests.put(name, classHash.digest);
+            toCheck.addAll(classHash.dependencies);
+        }
+        return digests;
+    }
+
+    /**
+     * Returns the hash of a single class, or null if the class is not part of the project.
+     */
+    protected ClassHash getClassHash(String internalName) {
+        if (classHashes.containsKey(internalName)) {
+            return classHashes.get(internalName);
+        }
+
+        ClassHash classHash = null;
+        URL classUrl = classLoader.getResource(internalName + ".class");
+        if (classUrl != null && isInProject(classUrl)) {
+            File classFile = new File(classUrl.getFile());
+            String cached = hashCache == null ? null : hashCache.get(classFile, CACHE_KIND);
+            if (cached != null) {
+                String[] split = cached.split(" ", 2);
+                Set<String> dependencies = new TreeSet<>();
+                if (split.length == 2) {
+                    dependencies.addAll(Arrays.asList(split[1].split(",")));
+                }
+                classHash = new ClassHash(split[0], dependencies);
+            } else {
+                try (InputStream stream = classUrl.openStream()) {
+                    classHash = hashClass(readFully(stream));
+                } catch (IOException e) {
+                    throw new RuntimeException("Error reading " + classUrl, e);
+                }
+                if (hashCache != null) {
+                    hashCache.put(classFile, CACHE_KIND, classHash.digest + " " + StringUtils.join(classHash.dependencies, ",", false));
+                }
+            }
+        }
+        classHashes.put(internalName, classHash);
+        return classHash;
+    }
+
+    /**
+     * Returns true if the class at the given URL is part of the project being tested. By default, classes in directories are part of the project and classes in jars are not.
+     */
+    protected boolean isInProject(URL classUrl) {
+        return classUrl.getProtocol().equals("file") && !classUrl.toExternalForm().contains("jar:");
+    }
+
+    /**
+     * Computes the hash of the given class file with debug attributes removed, along with the internal names of the classes it references.
+     */
+    public static ClassHash hashClass(byte[] classBytes) throws IOException {
+        return new ClassFileHasher(classBytes).hash();
+    }
+
+    private static byte[] readFully(InputStream stream) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int read;
+        while ((read = stream.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Hash and referenced classes of a single class file.
+     */
+    public static class ClassHash {
+        private final String digest;
+        private final Set<String> dependencies;
+
+        public ClassHash(String digest, Set<String> dependencies) {
+            this.digest = digest;
+            this.dependencies = dependencies;
+        }
+
+        public String getDigest() {
+            return digest;
+        }
+
+        public Set<String> getDependencies() {
+            return dependencies;
+        }
+    }
+
+    /**
+     * Parses a class file in two passes. The first pass finds constant pool strings only used by debug attributes, the second pass digests everything else.
+     */
+    private static class ClassFileHasher {
+        private final byte[] bytes;
+        private int pos;
+
+        private Object[] constants;
+        private int[] tags;
+        private int constantPoolEnd;
+
+        private final Set<Integer> usedStrings = new HashSet<>();
+        private final Set<Integer> debugStrings = new HashSet<>();
+        private final Set<Integer> groovyTimestamps = new HashSet<>();
+        private String memberName;
+
+        private MessageDigest digest;
+
+        private ClassFileHasher(byte[] bytes) {
+            this.bytes = bytes;
+        }
+
+        private ClassHash hash() throws IOException {
+            if (bytes.length < 10 || u4(0) != 0xCAFEBABEL) {
+                throw new IOException("Not a class file");
+            }
+            readConstantPool();
+
+            digest = null;
+            pos = constantPoolEnd;
+            readClassBody();
+
+            try {
+                digest = MessageDigest.getInstance("SHA-1");
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+
+            for (int i = 1; i < constants.length; i++) {
+                if (tags[i] == 0) {
+                    continue;
+                }
+                if (tags[i] == 1 && debugStrings.contains(i) && !usedStrings.contains(i)) {
+                    continue;
+                }
+                if (isGroovyTimestamp(i)) {
+                    continue;
+                }
+                update(i);
+                update(tags[i]);
+                if (constants[i] instanceof String) {
+                    update(((String) constants[i]).getBytes("UTF-8"));
+                } else {
+                    update((byte[]) constants[i]);
+                }
+            }
+
+            pos = constantPoolEnd;
+            readClassBody();
+
+            Set<String> dependencies = new TreeSet<>();
+            for (int i = 1; i < constants.length; i++) {
+                if (tags[i] == 7) {
+                    String name = (String) constants[u2((byte[]) constants[i], 0)];
+                    if (name.startsWith("[")) {
+                        int objectStart = name.indexOf('L');
+                        if (objectStart < 0) {
+                            continue;
+                        }
+                        name = name.substring(objectStart + 1, name.length() - 1);
+                    }
+                    dependencies.add(name);
+                }
+            }
+
+            return new ClassHash(new String(StringUtils.encodeHex(digest.digest())), dependencies);
+        }
+
+        private void readConstantPool() throws IOException {
+            int count = u2(8);
+            constants = new Object[count];
+            tags = new int[count];
+            pos = 10;
+            for (int i = 1; i < count; i++) {
+                int tag = bytes[pos++] & 0xFF;
+                tags[i] = tag;
+                int length;
+                switch (tag) {
+                    case 1:
+                        int utfLength = u2(pos);
+                        constants[i] = new DataInputStream(new ByteArrayInputStream(bytes, pos, utfLength + 2)).readUTF();
+                        pos += utfLength + 2;
+                        continue;
+                    case 7:
+                    case 8:
+                    case 16:
+                    case 19:
+                    case 20:
+                        length = 2;
+                        break;
+                    case 15:
+                        length = 3;
+                        break;
+                    case 3:
+                    case 4:
+                    case 9:
+                    case 10:
+                    case 11:
+                    case 12:
+                    case 17:
+                    case 18:
+                        length = 4;
+                        break;
+                    case 5:
+                    case 6:
+                        length = 8;
+                        break;
+                    default:
+                        throw new IOException("Unknown constant pool tag " + tag);
+                }
+                constants[i] = Arrays.copyOfRange(bytes, pos, pos + length);
+                markReferencedStrings(tag, (byte[]) constants[i]);
+                pos += length;
+                if (tag == 5 || tag == 6) {
+                    i++;
+                }
+            }
+            constantPoolEnd = pos;
+        }
+
+        /**
+         * Returns true if the given constant holds the compile time of a Groovy class: the name of its timestamp field or a long constant assigned to a timestamp field.
+         */
+        private boolean isGroovyTimestamp(int index) {
+            if (tags[index] == 1) {
+                return ((String) constants[index]).startsWith(GROOVY_TIMESTAMP_NAME_FIELD);
+            }
+            return groovyTimestamps.contains(index);
+        }
+
+        /**
+         * Finds the long constants the static initializer stores in Groovy timestamp fields. Groovy loads the compile time with ldc2_w, boxes and unboxes it, then stores it with putstatic.
+         */
+        private void markGroovyTimestamps(int codeStart, int codeLength) {
+            int lastLongConstant = -1;
+            int offset = 0;
+            while (offset < codeLength) {
+                int opcode = bytes[codeStart + offset] & 0xFF;
+                if (opcode == LDC2_W) {
+                    lastLongConstant = u2(codeStart + offset + 1);
+                } else if (opcode == PUTSTATIC) {
+                    if (lastLongConstant > 0 && isGroovyTimestampField(u2(codeStart + offset + 1))) {
+                        groovyTimestamps.add(lastLongConstant);
+                    }
+                    lastLongConstant = -1;
+                }
+                offset += getInstructionLength(codeStart, offset);
+            }
+        }
+
+        private boolean isGroovyTimestampField(int fieldref) {
+            if (tags[fieldref] != 9) {
+                return false;
+            }
+            int nameAndType = u2((byte[]) constants[fieldref], 2);
+            Object name = constants[u2((byte[]) constants[nameAndType], 0)];
+            return name instanceof String && ((String) name).startsWith(GROOVY_TIMESTAMP_FIELD);
+        }
+
+        /**
+         * Returns the length of the instruction at the given offset of the code starting at codeStart.
+         */
+        private int getInstructionLength(int codeStart, int offset) {
+            int opcode = bytes[codeStart + offset] & 0xFF;
+            switch (opcode) {
+                case TABLESWITCH: {
+                    int padded = offset + 1 + (3 - (offset % 4));
+                    int low = (int) u4(codeStart + padded + 4);
+                    int high = (int) u4(codeStart + padded + 8);
+                    return padded - offset + 12 + (high - low + 1) * 4;
+                }
+                case LOOKUPSWITCH: {
+                    int padded = offset + 1 + (3 - (offset % 4));
+                    int pairs = (int) u4(codeStart + padded + 4);
+                    return padded - offset + 8 + pairs * 8;
+                }
+                case WIDE:
+                    return (bytes[codeStart + offset + 1] & 0xFF) == IINC ? 6 : 4;
+                case 0x10: //bipush
+                case 0x12: //ldc
+                case 0x15: case 0x16: case 0x17: case 0x18: case 0x19: //loads
+                case 0x36: case 0x37: case 0x38: case 0x39: case 0x3a: //stores
+                case 0xa9: //ret
+                case 0xbc: //newarray
+                    return 2;
+                case 0x11: //sipush
+                case 0x13: //ldc_w
+                case 0x14: //ldc2_w
+                case IINC:
+                case 0xbb: //new
+                case 0xbd: //anewarray
+                case 0xc0: //checkcast
+                case 0xc1: //instanceof
+                case 0xc6: //ifnull
+                case 0xc7: //ifnonnull
+                    return 3;
+                case 0xc5: //multianewarray
+                    return 4;
+                case 0xb9: //invokeinterface
+                case 0xba: //invokedynamic
+                case 0xc8: //goto_w
+                case 0xc9: //jsr_w
+                    return 5;
+                default:
+                    if ((opcode >= 0x99 && opcode <= 0xa8) || (opcode >= 0xb2 && opcode <= 0xb8)) {
+                        return 3; //branches, field access and invocations
+                    }
+                    return 1;
+            }
+        }
+
+        private void markReferencedStrings(int tag, byte[] value) {
+            switch (tag) {
+                case 7:
+                case 8:
+                case 16:
+                case 19:
+                case 20:
+                    usedStrings.add(u2(value, 0));
+                    break;
+                case 12:
+                    usedStrings.add(u2(value, 0));
+                    usedStrings.add(u2(value, 2));
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        private void readClassBody() throws IOException {
+            copy(6); //access flags, this class, super class
+            int interfaces = copyU2();
+            copy(interfaces * 2);
+
+            for (int member = 0; member < 2; member++) {
+                int count = copyU2();
+                for (int i = 0; i < count; i++) {
+                    copy(2);
+                    int nameIndex = copyU2();
+                    usedStrings.add(nameIndex);
+                    usedStrings.add(copyU2());
+                    memberName = member == 1 ? (String) constants[nameIndex] : null;
+                    readAttributes();
+                }
+            }
+            memberName = null;
+            readAttributes();
+        }
+
+        private void readAttributes() throws IOException {
+            int count = u2(pos);
+            pos += 2;
+            for (int i = 0; i < count; i++) {
+                int nameIndex = u2(pos);
+                String name = (String) constants[nameIndex];
+                int length = (int) u4(pos + 2);
+                int start = pos + 6;
+                int end = start + length;
+
+                if (DEBUG_ATTRIBUTES.contains(name)) {
+                    debugStrings.add(nameIndex);
+                    markDebugStrings(name, start);
+                    pos = end;
+                    continue;
+                }
+
+                usedStrings.add(nameIndex);
+                pos += 2;
+                update(nameIndex);
+                pos += 4;
+
+                if (name.equals("Code")) {
+                    copy(4); //max stack, max locals
+                    int codeLength = (int) u4(pos);
+                    if (digest == null && "<clinit>".equals(memberName)) {
+                        markGroovyTimestamps(pos + 4, codeLength);
+                    }
+                    copy(4 + codeLength);
+                    int exceptions = copyU2();
+                    copy(exceptions * 8);
+                    readAttributes();
+                } else {
+                    if (name.equals("Signature")) {
+                        usedStrings.add(u2(start));
+                    } else if (ANNOTATION_ATTRIBUTES.contains(name)) {
+                        markAnnotations(start);
+                    } else if (PARAMETER_ANNOTATION_ATTRIBUTES.contains(name)) {
+                        int parameters = bytes[start] & 0xFF;
+                        int annotationPos = start + 1;
+                        for (int p = 0; p < parameters; p++) {
+                            annotationPos = markAnnotations(annotationPos);
+                        }
+                    } else if (name.equals("AnnotationDefault")) {
+                        markElementValue(start);
+                    }
+                    copy(length);
+                }
+                pos = end;
+            }
+        }
+
+        private void markDebugStrings(String name, int start) {
+            if (name.equals("SourceFile")) {
+                debugStrings.add(u2(start));
+            } else if (name.equals("LocalVariableTable") || name.equals("LocalVariableTypeTable")) {
+                int entries = u2(start);
+                for (int i = 0; i < entries; i++) {
+                    int entry = start + 2 + i * 10;
+                    debugStrings.add(u2(entry + 4));
+                    debugStrings.add(u2(entry + 6));
+                }
+            }
+        }
+
+        private int markAnnotations(int start) {
+            int count = u2(start);
+            int annotationPos = start + 2;
+            for (int i = 0; i < count; i++) {
+                annotationPos = markAnnotation(annotationPos);
+            }
+            return annotationPos;
+        }
+
+        private int markAnnotation(int start) {
+            usedStrings.add(u2(start));
+            int pairs = u2(start + 2);
+            int pairPos = start + 4;
+            for (int i = 0; i < pairs; i++) {
+                usedStrings.add(u2(pairPos));
+                pairPos = markElementValue(pairPos + 2);
+            }
+            return pairPos;
+        }
+
+        private int markElementValue(int start) {
+            char tag = (char) bytes[start];
+            switch (tag) {
+                case 'e':
+                    usedStrings.add(u2(start + 1));
+                    usedStrings.add(u2(start + 3));
+                    return start + 5;
+                case '@':
+                    return markAnnotation(start + 1);
+                case '[':
+                    int values = u2(start + 1);
+                    int valuePos = start + 3;
+                    for (int i = 0; i < values; i++) {
+                        valuePos = markElementValue(valuePos);
+                    }
+                    return valuePos;
+                default:
+                    usedStrings.add(u2(start + 1));
+                    return start + 3;
+            }
+        }
+
+        private int copyU2() {
+            int value = u2(pos);
+            copy(2);
+            return value;
+        }
+
+        private void copy(int length) {
+            if (digest != null) {
+                digest.update(bytes, pos, length);
+            }
+            pos += length;
+        }
+
+        private void update(int value) {
+            if (digest != null) {
+                digest.update((byte) (value >>> 8));
+                digest.update((byte) value);
+            }
+        }
+
+        private void update(byte[] value) {
+            if (digest != null) {
+                digest.update(value);
+            }
+        }
+
+        private int u2(int offset) {
+            return u2(bytes, offset);
+        }
+
+        private static int u2(byte[] array, int offset) {
+            return ((array[offset] & 0xFF) << 8) | (array[offset + 1] & 0xFF);
+        }
+
+        private long u4(int offset) {
+            return ((long) (bytes[offset] & 0xFF) << 24) | ((bytes[offset + 1] & 0xFF) << 16) | ((bytes[offset + 2] & 0xFF) << 8) | (bytes[offset + 3] & 0xFF);
+        }
+    }
+}
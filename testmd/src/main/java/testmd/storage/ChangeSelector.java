@@ -0,0 +1,197 @@
+package testmd.storage;
+
+import java.io.*;
+import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Selects the test groups affected by a set of changed files, such as the files changed in a pull request.
+ * Changed files are given as paths relative to the repository root and are matched against the end of absolute file paths, so no repository root needs to be configured.
+ * <br><br>
+ * A test group is affected if its accepted file, the source of its test class or the source of a superclass included in the test hash changed.
+ * Changes to the accepted files or test sources of other test groups do not affect it.
+ * Changes to other sources only affect it if it depends on them in {@link testmd.storage.TestManager.HashMode#BYTECODE} mode, otherwise any other change affects every test group.
+ */
+public class ChangeSelector {
+
+    private static final List<String> SOURCE_ROOTS = Arrays.asList("src/main/java/", "src/main/groovy/", "src/test/java/", "src/test/groovy/");
+    private static final List<String> SOURCE_EXTENSIONS = Arrays.asList(".java", ".groovy");
+    private static final Pattern GIT_DIFF_HEADER = Pattern.compile("diff --git a/(.+) b/(.+)");
+
+    private final SortedSet<String> changedFiles = new TreeSet<>();
+
+    public ChangeSelector(Collection<String> changedFiles) {
+        for (String changedFile : changedFiles) {
+            String path = changedFile.trim().replace('\\', '/');
+            while (path.startsWith("./") || path.startsWith("/")) {
+                path = path.substring(path.indexOf('/') + 1);
+            }
+            if (path.length() > 0) {
+                this.changedFiles.add(path);
+            }
+        }
+    }
+
+    public SortedSet<String> getChangedFiles() {
+        return Collections.unmodifiableSortedSet(changedFiles);
+    }
+
+    /**
+     * Returns true if the given test group may be affected by the changed files.
+     *
+     * @param acceptedFile the accepted file of the test group
+     * @param resultsBase  the directory accepted files are stored in, used to recognize the sources of other test groups
+     * @param sourceFiles  the sources of the test class and superclasses included in the test hash. If empty, the group is always affected
+     * @param dependencies internal names of the classes the test class depends on in BYTECODE mode, or null if not known
+     */
+    public boolean isAffected(File acceptedFile, File resultsBase, Collection<File> sourceFiles, Set<String> dependencies) {
+        if (sourceFiles.isEmpty()) {
+            return !changedFiles.isEmpty();
+        }
+
+        List<String> groupPaths = new ArrayList<>();
+        groupPaths.add(getPath(acceptedFile));
+        for (File sourceFile : sourceFiles) {
+            groupPaths.add(getPath(sourceFile));
+        }
+
+        for (String changedFile : changedFiles) {
+            for (String groupPath : groupPaths) {
+                if (groupPath.equals(changedFile) || groupPath.endsWith("/" + changedFile)) {
+                    return true;
+                }
+            }
+
+            if (changedFile.endsWith(".accepted.md")) {
+                continue;
+            }
+
+            String className = getClassName(changedFile);
+            if (className != null) {
+                if (dependencies != null) {
+                    if (dependsOn(dependencies, className)) {
+                        return true;
+                    }
+                    continue;
+                }
+                if (changedFile.contains("src/test/") && new File(resultsBase, className + ".accepted.md").exists()) {
+                    continue; //source of another test group
+                }
+            }
+
+            return true;
+        }
+        return false;
+    }
+
+    private String getPath(File file) {
+        try {
+            return file.getCanonicalPath().replace('\\', '/');
+        } catch (IOException e) {
+            return file.getAbsolutePath().replace('\\', '/');
+        }
+    }
+
+    protected boolean dependsOn(Set<String> dependencies, String className) {
+        for (String dependency : dependencies) {
+            if (dependency.equals(className) || dependency.startsWith(className + "$")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the internal name (com/example/Name) of the class defined by the given source path, or null if the path is not a source file in a standard source directory.
+     */
+    protected static String getClassName(String path) {
+        for (String extension : SOURCE_EXTENSIONS) {
+            if (path.endsWith(extension)) {
+                for (String sourceRoot : SOURCE_ROOTS) {
+                    int index = path.lastIndexOf(sourceRoot);
+                    if (index >= 0 && (index == 0 || path.charAt(index - 1) == '/')) {
+                        return path.substring(index + sourceRoot.length(), path.length() - extension.length());
+                    }
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Reads changed files from a list of paths, one per line, or from a unified diff such as the output of "git diff".
+     * For diffs, both the old and new path of each file are returned.
+     */
+    public static List<String> readChangedFiles(Reader reader) throws IOException {
+        List<String> paths = new ArrayList<>();
+        Set<String> diffPaths = new LinkedHashSet<>();
+        boolean isDiff = false;
+
+        BufferedReader bufferedReader = new BufferedReader(reader);
+        String line;
+        while ((line = bufferedReader.readLine()) != null) {
+            if (line.startsWith("diff ")) {
+                isDiff = true;
+                Matcher gitHeader = GIT_DIFF_HEADER.matcher(line);
+                if (gitHeader.matches()) { //only header for binary and mode changes
+                    diffPaths.add(gitHeader.group(1));
+                    diffPaths.add(gitHeader.group(2));
+                }
+            } else if (line.startsWith("--- ") || line.startsWith("+++ ")) {
+                isDiff = true;
+                String path = line.substring(4).replaceFirst("\t.*", "").trim();
+                if (!path.equals("/dev/null")) {
+                    diffPaths.add(path.replaceFirst("^[ab]/", ""));
+                }
+            } else if (line.startsWith("rename from ") || line.startsWith("rename to ")) {
+                diffPaths.add(line.replaceFirst("^rename (from|to) ", "").trim());
+            } else if (!isDiff && line.trim().length() > 0) {
+                paths.add(line.trim());
+            }
+        }
+
+        if (isDiff) {
+            return new ArrayList<>(diffPaths);
+        }
+        return paths;
+    }
+
+    /**
+     * Returns the files changed in the local git working tree containing the given directory compared to the given commit, including uncommitted and untracked files.
+     * Only the local repository is used.
+     */
+    public static List<String> readGitChanges(File directory, String base) {
+        List<String> paths = new ArrayList<>();
+        paths.addAll(runGit(directory, "diff", "--name-only", base));
+        paths.addAll(runGit(directory, "ls-files", "--others", "--exclude-standard", "--full-name"));
+        return paths;
+    }
+
+    private static List<String> runGit(File directory, String... args) {
+        List<String> command = new ArrayList<>();
+        command.add("git");
+        command.addAll(Arrays.asList(args));
+
+        try {
+            Process process = new ProcessBuilder(command).directory(directory).redirectError(ProcessBuilder.Redirect.INHERIT).start();
+            process.getOutputStream().close();
+
+            List<String> output;
+            try (Reader reader = new InputStreamReader(process.getInputStream(), "UTF-8")) {
+                output = readChangedFiles(reader);
+            }
+
+            int exitCode = process.waitFor();
+            if (exitCode != 0) {
+                throw new RuntimeException("Error running " + command + " in " + directory.getAbsolutePath() + ": exit code " + exitCode);
+            }
+            return output;
+        } catch (IOException e) {
+            throw new RuntimeException("Error running " + command, e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted running " + command, e);
+        }
+    }
+}
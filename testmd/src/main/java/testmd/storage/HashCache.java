@@ -0,0 +1,101 @@
+package testmd.storage;
+
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.Properties;
+
+/**
+ * Persistent cache of values computed from files, such as source and class file hashes.
+ * Entries are keyed by the file path and a "kind" describing what was computed, and are only returned while the file size and last modified time are unchanged.
+ * <br><br>
+ * The cache is stored as a properties file and is written by {@link #save()}.
+ * If no storage file is given, values are only cached in memory.
+ */
+public class HashCache {
+
+    private final File storeFile;
+    private Properties entries;
+    private boolean changed = false;
+
+    public HashCache(File storeFile) {
+        this.storeFile = storeFile;
+    }
+
+    public File getStoreFile() {
+        return storeFile;
+    }
+
+    /**
+     * Returns the cached value for the given file and kind, or null if it is not cached or the file has changed since it was cached.
+     */
+    public synchronized String get(File file, String kind) {
+        String stored = getEntries().getProperty(createKey(file, kind));
+        if (stored == null) {
+            return null;
+        }
+
+        String[] split = stored.split("\\|", 3);
+        if (split.length != 3 || !split[0].equals(String.valueOf(file.length())) || !split[1].equals(String.valueOf(file.lastModified()))) {
+            return null;
+        }
+        return split[2];
+    }
+
+    /**
+     * Stores the value computed for the given file.
+     */
+    public synchronized void put(File file, String kind, String value) {
+        if (value == null) {
+            return;
+        }
+        getEntries().setProperty(createKey(file, kind), file.length() + "|" + file.lastModified() + "|" + value);
+        changed = true;
+    }
+
+    /**
+     * Writes the cache to the storage file, if any values have changed. Entries for files that no longer exist are removed.
+     */
+    public synchronized void save() {
+        if (storeFile == null || !changed) {
+            return;
+        }
+
+        for (Object keyObject : new ArrayList<>(getEntries().keySet())) {
+            String key = (String) keyObject;
+            if (!new File(key.substring(key.indexOf('|') + 1)).exists()) {
+                entries.remove(key);
+            }
+        }
+
+        try {
+            storeFile.getParentFile().mkdirs();
+            try (OutputStream out = new BufferedOutputStream(new FileOutputStream(storeFile))) {
+                entries.store(out, "TestMD hash cache. Safe to delete");
+            }
+            changed = false;
+        } catch (IOException e) {
+            LoggerFactory.getLogger(getClass()).warn("Cannot save hash cache to " + storeFile.getAbsolutePath() + ": " + e.getMessage());
+        }
+    }
+
+    private Properties getEntries() {
+        if (entries == null) {
+            entries = new Properties();
+            if (storeFile != null && storeFile.exists()) {
+                try (InputStream in = new BufferedInputStream(new FileInputStream(storeFile))) {
+                    entries.load(in);
+                } catch (IOException e) {
+                    LoggerFactory.getLogger(getClass()).debug("Cannot read hash cache " + storeFile.getAbsolutePath() + ": " + e.getMessage());
+                    entries.clear();
+                }
+            }
+        }
+        return entries;
+    }
+
+    private String createKey(File file, String kind) {
+        return kind.replace('|', '/') + "|" + file.getAbsolutePath();
+    }
+}
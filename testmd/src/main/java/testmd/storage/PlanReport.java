@@ -0,0 +1,174 @@
+package testmd.storage;
+
+import org.slf4j.LoggerFactory;
+import testmd.Permutation;
+import testmd.RunReason;
+import testmd.util.StringUtils;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * Collects the permutations evaluated in plan mode and writes a markdown report of which would be executed and why.
+ * The report is written once all results are flushed. See {@link testmd.storage.TestManager#setPlan(boolean)}
+ */
+public class PlanReport {
+
+    private static final PlanReport INSTANCE = new PlanReport();
+
+    private final List<PlannedPermutation> permutations = new ArrayList<>();
+    private File file;
+    private boolean registered = false;
+
+    protected PlanReport() {
+    }
+
+    public static PlanReport getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Sets the file to write the report to. Only the first file set is used.
+     */
+    public synchronized void setFile(File file) {
+        if (this.file == null) {
+            this.file = file;
+        }
+    }
+
+    public synchronized File getFile() {
+        return file;
+    }
+
+    /**
+     * Adds a permutation evaluated with {@link testmd.Permutation#plan(testmd.PermutationResult)} to the report.
+     */
+    public synchronized void add(String testGroup, String testName, Permutation permutation) {
+        permutations.add(new PlannedPermutation(testGroup, testName, permutation.getKey(),
+                StringUtils.join(permutation.getParameters(), ", ", StringUtils.STANDARD_STRING_FORMAT, true), permutation.getRunReason()));
+
+        if (!registered) {
+            ResultsFlusher.getInstance().runAfterFlush(new Runnable() {
+                @Override
+                public void run() {
+                    write();
+                }
+            });
+            registered = true;
+        }
+    }
+
+    /**
+     * Writes the report to the configured file, if any permutations were planned.
+     */
+    public synchronized void write() {
+        if (file == null || permutations.size() == 0) {
+            return;
+        }
+
+        try {
+            file.getAbsoluteFile().getParentFile().mkdirs();
+            try (Writer out = new BufferedWriter(new FileWriter(file))) {
+                write(out);
+            }
+            LoggerFactory.getLogger(getClass()).info("TestMD plan: " + countToRun() + " of " + permutations.size() + " permutation(s) would run. See " + file.getAbsolutePath());
+        } catch (IOException e) {
+            throw new RuntimeException("Error writing plan to " + file.getAbsolutePath(), e);
+        }
+    }
+
+    protected synchronized void write(Writer out) throws IOException {
+        SortedMap<RunReason, Integer> counts = new TreeMap<>();
+        for (PlannedPermutation permutation : permutations) {
+            Integer count = counts.get(permutation.reason);
+            counts.put(permutation.reason, count == null ? 1 : count + 1);
+        }
+
+        out.append("# TestMD Plan #\n\n");
+        out.append("- **Permutations:** ").append(String.valueOf(permutations.size())).append("\n");
+        out.append("- **Would run:** ").append(String.valueOf(countToRun())).append("\n\n");
+
+        out.append("## Reasons ##\n\n");
+        out.append("| Reason | Runs | Permutations |\n");
+        out.append("| :----- | :--- | :----------- |\n");
+        for (Map.Entry<RunReason, Integer> entry : counts.entrySet()) {
+            out.append("| ").append(entry.getKey().getDescription())
+                    .append(" | ").append(entry.getKey().isRun() ? "yes" : "no")
+                    .append(" | ").append(String.valueOf(entry.getValue())).append(" |\n");
+        }
+
+        List<PlannedPermutation> toRun = new ArrayList<>();
+        for (PlannedPermutation permutation : permutations) {
+            if (permutation.reason.isRun()) {
+                toRun.add(permutation);
+            }
+        }
+        Collections.sort(toRun);
+
+        if (toRun.size() > 0) {
+            out.append("\n## Permutations To Run ##\n\n");
+            out.append("| Test Group | Test | Permutation | Reason | Parameters |\n");
+            out.append("| :--------- | :--- | :---------- | :----- | :--------- |\n");
+            for (PlannedPermutation permutation : toRun) {
+                out.append("| ").append(clean(permutation.testGroup))
+                        .append(" | ").append(clean(permutation.testName))
+                        .append(" | ").append(permutation.key)
+                        .append(" | ").append(permutation.reason.getDescription())
+                        .append(" | ").append(clean(permutation.parameters)).append(" |\n");
+            }
+        }
+        out.flush();
+    }
+
+    protected synchronized int countToRun() {
+        int count = 0;
+        for (PlannedPermutation permutation : permutations) {
+            if (permutation.reason.isRun()) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Removes all planned permutations.
+     */
+    public synchronized void clear() {
+        permutations.clear();
+    }
+
+    private String clean(String string) {
+        if (string == null) {
+            return "";
+        }
+        return string.replace("|", "&#124;").replace("\r\n", "<br>").replace("\n", "<br>");
+    }
+
+    private static class PlannedPermutation implements Comparable<PlannedPermutation> {
+        private final String testGroup;
+        private final String testName;
+        private final String key;
+        private final String parameters;
+        private final RunReason reason;
+
+        private PlannedPermutation(String testGroup, String testName, String key, String parameters, RunReason reason) {
+            this.testGroup = testGroup;
+            this.testName = testName;
+            this.key = key;
+            this.parameters = parameters;
+            this.reason = reason;
+        }
+
+        @Override
+        public int compareTo(PlannedPermutation o) {
+            int i = testGroup.compareTo(o.testGroup);
+            if (i == 0) {
+                i = testName.compareTo(o.testName);
+            }
+            if (i == 0) {
+                i = key.compareTo(o.key);
+            }
+            return i;
+        }
+    }
+}
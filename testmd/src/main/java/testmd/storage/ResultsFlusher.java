@@ -0,0 +1,182 @@
+package testmd.storage;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import testmd.util.StringUtils;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Coordinates writing results for all {@link testmd.storage.TestManager}s.
+ * A single Runtime shutdown hook is registered the first time a TestManager is added, and all pending managers are written through a bounded thread pool.
+ * Results can also be written before shutdown with {@link #flush()}.
+ * <br><br>
+ * The number of writer threads can be set with the "testmd.writeThreads" system property and the number of seconds to wait for all results to be written can be set with the "testmd.writeTimeout" system property.
+ */
+public class ResultsFlusher {
+
+    private static final ResultsFlusher INSTANCE = new ResultsFlusher();
+
+    private final Set<TestManager> pending = new LinkedHashSet<>();
+    private final List<Runnable> afterFlush = new ArrayList<>();
+    private boolean hookRegistered = false;
+
+    private int threads;
+    private long timeoutSeconds;
+
+    protected ResultsFlusher() {
+        threads = readIntProperty("testmd.writeThreads", Math.min(4, Runtime.getRuntime().availableProcessors()));
+        timeoutSeconds = readIntProperty("testmd.writeTimeout", 60);
+    }
+
+    public static ResultsFlusher getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Sets the maximum number of threads used to write results.
+     */
+    public void setThreads(int threads) {
+        this.threads = threads;
+    }
+
+    /**
+     * Sets the maximum number of seconds to wait for all results to be written.
+     */
+    public void setTimeoutSeconds(long timeoutSeconds) {
+        this.timeoutSeconds = timeoutSeconds;
+    }
+
+    /**
+     * Adds the given TestManager to the results that will be written on the next flush. Adding the same TestManager multiple times has no effect.
+     */
+    public synchronized void register(TestManager testManager) {
+        pending.add(testManager);
+        registerHook();
+    }
+
+    /**
+     * Adds logic to run at the end of every flush, after all results are written, such as saving caches.
+     */
+    public synchronized void runAfterFlush(Runnable runnable) {
+        afterFlush.add(runnable);
+        registerHook();
+    }
+
+    private void registerHook() {
+        if (!hookRegistered) {
+            Runtime.getRuntime().addShutdownHook(new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    flush();
+                }
+            }, "testmd-results-flush"));
+            hookRegistered = true;
+        }
+    }
+
+    /**
+     * Writes results for all registered TestManagers and blocks until they are written or the timeout is reached.
+     * Returns true if all results were written.
+     */
+    public boolean flush() {
+        final List<TestManager> toWrite;
+        synchronized (this) {
+            toWrite = new ArrayList<>(pending);
+            pending.clear();
+        }
+
+        try {
+            return write(toWrite);
+        } finally {
+            List<Runnable> toRun;
+            synchronized (this) {
+                toRun = new ArrayList<>(afterFlush);
+            }
+            for (Runnable runnable : toRun) {
+                try {
+                    runnable.run();
+                } catch (Throwable e) {
+                    LoggerFactory.getLogger(getClass()).warn("Error running after flush: " + e.getMessage(), e);
+                }
+            }
+        }
+    }
+
+    private boolean write(List<TestManager> toWrite) {
+        if (toWrite.size() == 0) {
+            return true;
+        }
+
+        final Logger log = LoggerFactory.getLogger(getClass());
+        final int total = toWrite.size();
+        final AtomicInteger written = new AtomicInteger();
+        final Set<TestManager> unfinished = Collections.synchronizedSet(new LinkedHashSet<>(toWrite));
+
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(threads, total)), new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "testmd-results-writer-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+
+        final int progressInterval = Math.max(1, total / 10);
+        try {
+            for (final TestManager testManager : toWrite) {
+                executor.submit(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            testManager.writeResults();
+                        } catch (Throwable e) {
+                            log.error("Error writing results for " + testManager.getTestGroup(), e);
+                        } finally {
+                            unfinished.remove(testManager);
+                            int count = written.incrementAndGet();
+                            if (count == total || count % progressInterval == 0) {
+                                log.info("Wrote TestMD results for " + count + " of " + total + " test group(s)");
+                            }
+                        }
+                    }
+                });
+            }
+            executor.shutdown();
+
+            if (!executor.awaitTermination(timeoutSeconds, TimeUnit.SECONDS)) {
+                List<String> notWritten = new ArrayList<>();
+                synchronized (unfinished) {
+                    for (TestManager testManager : unfinished) {
+                        notWritten.add(testManager.getTestGroup());
+                    }
+                }
+                log.warn("Timed out after " + timeoutSeconds + "s writing TestMD results. Not written: " + StringUtils.join(notWritten, ", ", true));
+                executor.shutdownNow();
+                return false;
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+            return false;
+        }
+
+        return unfinished.isEmpty();
+    }
+
+    private static int readIntProperty(String property, int defaultValue) {
+        String value = StringUtils.trimToNull(System.getProperty(property));
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new RuntimeException("Invalid " + property + " value: " + value, e);
+        }
+    }
+}
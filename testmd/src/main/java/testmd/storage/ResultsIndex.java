@@ -0,0 +1,267 @@
+package testmd.storage;
+
+import testmd.PreviousResults;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Index of the byte ranges of each "# Test: ..." section in a stored results file.
+ * The file is read into memory once and scanned as UTF-8 bytes for section header lines, so sections can be decoded and parsed with {@link testmd.storage.ResultsReader} one test at a time when they are first needed.
+ * The file is not kept open or memory-mapped, so it can be rewritten while the index is in use.
+ * <br><br>
+ * A test can have multiple sections when results are stored for multiple environments.
+ * When many tests are read at once from a large file, sections are parsed in parallel on a shared {@link java.util.concurrent.ForkJoinPool}.
+ */
+public class ResultsIndex {
+
+    private static final byte[] TEST_START = "# Test: \"".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] TEST_VERSION = "# Test Version: \"".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] HEADER_END = "\" #".getBytes(StandardCharsets.UTF_8);
+
+    /**
+     * Minimum number of bytes to parse before sections are parsed in parallel. Smaller reads are faster on a single thread.
+     */
+    protected static final int PARALLEL_THRESHOLD = 256 * 1024;
+
+    private static ForkJoinPool parsePool;
+
+    private final File file;
+    private final ByteBuffer buffer;
+    private final Map<String, List<int[]>> sections = new LinkedHashMap<>();
+    private String testHash;
+
+    protected ResultsIndex(File file, ByteBuffer buffer) {
+        this.file = file;
+        this.buffer = buffer;
+    }
+
+    /**
+     * Reads the given UTF-8 file and scans it for section headers. Only test names and the test hash are decoded.
+     */
+    public static ResultsIndex build(File file) throws IOException {
+        ResultsIndex index = new ResultsIndex(file, readFile(file));
+        index.scan();
+        return index;
+    }
+
+    /**
+     * Reads the whole file into a heap buffer.
+     * Files are not memory-mapped: on Windows a mapped file cannot be replaced or deleted until the mapping is garbage collected, and accepted files are rewritten while their results are still in use.
+     */
+    protected static ByteBuffer readFile(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("File " + file.getAbsolutePath() + " is too large to read");
+            }
+            ByteBuffer buffer = ByteBuffer.allocate((int) channel.size());
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer) < 0) {
+                    break;
+                }
+            }
+            buffer.flip();
+            return buffer;
+        }
+    }
+
+    private void scan() {
+        int limit = buffer.limit();
+        String currentTest = null;
+        int currentStart = 0;
+
+        int lineStart = 0;
+        while (lineStart < limit) {
+            int lineEnd = lineStart;
+            while (lineEnd < limit && buffer.get(lineEnd) != '\n') {
+                lineEnd++;
+            }
+
+            if (buffer.get(lineStart) == '#') {
+                String testName = decodeHeader(lineStart, lineEnd, TEST_START);
+                if (testName != null) {
+                    addSection(currentTest, currentStart, lineStart);
+                    currentTest = testName;
+                    currentStart = lineStart;
+                } else {
+                    String hash = decodeHeader(lineStart, lineEnd, TEST_VERSION);
+                    if (hash != null) {
+                        addSection(currentTest, currentStart, lineStart);
+                        currentTest = null;
+                        testHash = hash;
+                    }
+                }
+            }
+            lineStart = lineEnd + 1;
+        }
+        addSection(currentTest, currentStart, limit);
+    }
+
+    /**
+     * Returns the decoded text between the prefix and the closing '" #' of the line, or null if the line is not a header with the given prefix.
+     */
+    private String decodeHeader(int lineStart, int lineEnd, byte[] prefix) {
+        if (lineEnd > lineStart && buffer.get(lineEnd - 1) == '\r') {
+            lineEnd--;
+        }
+        if (lineEnd - lineStart < prefix.length + HEADER_END.length || !bytesMatch(lineStart, prefix) || !bytesMatch(lineEnd - HEADER_END.length, HEADER_END)) {
+            return null;
+        }
+        return decode(lineStart + prefix.length, lineEnd - HEADER_END.length).toString();
+    }
+
+    private boolean bytesMatch(int position, byte[] bytes) {
+        for (int i = 0; i < bytes.length; i++) {
+            if (buffer.get(position + i) != bytes[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private CharBuffer decode(int start, int end) {
+        ByteBuffer span = buffer.duplicate();
+        span.limit(end);
+        span.position(start);
+        return StandardCharsets.UTF_8.decode(span);
+    }
+
+    private void addSection(String testName, int start, int end) {
+        if (testName == null) {
+            return;
+        }
+        List<int[]> ranges = sections.get(testName);
+        if (ranges == null) {
+            ranges = new ArrayList<>();
+            sections.put(testName, ranges);
+        }
+        ranges.add(new int[]{start, end});
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * Returns the names of all tests with a section in the file, in file order.
+     */
+    public Set<String> getTestNames() {
+        return Collections.unmodifiableSet(sections.keySet());
+    }
+
+    /**
+     * Returns the hash stored at the end of the file, or null if there is none.
+     */
+    public String getTestHash() {
+        return testHash;
+    }
+
+    /**
+     * Parses only the sections of the given test. Results without their own test hash get the file level hash, the same as when the whole file is read.
+     */
+    public List<PreviousResults> read(String testClass, String testName, ResultsReader reader) throws IOException {
+        List<int[]> ranges = sections.get(testName);
+        if (ranges == null) {
+            return new ArrayList<>();
+        }
+
+        StringBuilder text = new StringBuilder();
+        for (int[] range : ranges) {
+            text.append(decode(range[0], range[1])).append("\n");
+        }
+        if (testHash != null) {
+            text.append("# Test Version: \"").append(testHash).append("\" #\n");
+        }
+
+        return reader.read(testClass, new StringReader(text.toString()));
+    }
+
+    /**
+     * Parses the sections of the given tests, returning the results of each test in file order. Tests without a section are not included.
+     * If the sections add up to at least {@link #PARALLEL_THRESHOLD} bytes they are parsed concurrently. The reader must be safe to use from multiple threads.
+     */
+    public Map<String, List<PreviousResults>> read(String testClass, Collection<String> testNames, ResultsReader reader) throws IOException {
+        Set<String> wantedNames = new HashSet<>(testNames);
+        List<String> sortedNames = new ArrayList<>();
+        long size = 0;
+        for (String testName : sections.keySet()) {
+            if (wantedNames.contains(testName)) {
+                sortedNames.add(testName);
+                for (int[] range : sections.get(testName)) {
+                    size += range[1] - range[0];
+                }
+            }
+        }
+
+        List<List<PreviousResults>> parsed = new ArrayList<>(Collections.<List<PreviousResults>>nCopies(sortedNames.size(), null));
+        if (size < PARALLEL_THRESHOLD || sortedNames.size() < 2) {
+            for (int i = 0; i < sortedNames.size(); i++) {
+                parsed.set(i, read(testClass, sortedNames.get(i), reader));
+            }
+        } else {
+            getParsePool().invoke(new ParseTask(testClass, sortedNames, parsed, reader, 0, sortedNames.size()));
+        }
+
+        Map<String, List<PreviousResults>> returnMap = new LinkedHashMap<>();
+        for (int i = 0; i < sortedNames.size(); i++) {
+            returnMap.put(sortedNames.get(i), parsed.get(i));
+        }
+        return returnMap;
+    }
+
+    protected static ForkJoinPool getParsePool() {
+        synchronized (ResultsIndex.class) {
+            if (parsePool == null) {
+                parsePool = new ForkJoinPool();
+            }
+            return parsePool;
+        }
+    }
+
+    /**
+     * Parses a range of tests, splitting it in half until a single test is left.
+     */
+    private class ParseTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final String testClass;
+        private final List<String> testNames;
+        private final List<List<PreviousResults>> parsed;
+        private final ResultsReader reader;
+        private final int start;
+        private final int end;
+
+        private ParseTask(String testClass, List<String> testNames, List<List<PreviousResults>> parsed, ResultsReader reader, int start, int end) {
+            this.testClass = testClass;
+            this.testNames = testNames;
+            this.parsed = parsed;
+            this.reader = reader;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        protected void compute() {
+            if (end - start == 1) {
+                String testName = testNames.get(start);
+                try {
+                    parsed.set(start, read(testClass, testName, reader));
+                } catch (IOException e) {
+                    throw new RuntimeException("Error reading " + testName + " from " + file.getAbsolutePath(), e);
+                }
+                return;
+            }
+            int middle = (start + end) >>> 1;
+            invokeAll(new ParseTask(testClass, testNames, parsed, reader, start, middle), new ParseTask(testClass, testNames, parsed, reader, middle, end));
+        }
+    }
+}
@@ -0,0 +1,480 @@
+package testmd.storage;
+
+import testmd.Permutation;
+import testmd.PermutationResult;
+import testmd.PreviousResults;
+import testmd.util.StringUtils;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.*;
+
+/**
+ * Reads results from stored markdown file.
+ */
+public class ResultsReader {
+
+    private enum Section {
+        DEFINITION,
+        NOTES,
+        DATA,
+        ADDITIVE_DATA
+    }
+
+    private static final String TEST_START = "# Test: \"";
+    private static final String TEST_VERSION = "# Test Version: \"";
+    private static final String TEST_METHOD_VERSION = "## Test Version: \"";
+    private static final String ENVIRONMENT = "## Environment: \"";
+    private static final String PERMUTATION_START = "## Permutation ";
+    private static final String INTERNAL_KEY_VALUE = "- _";
+    private static final String KEY_VALUE = "- **";
+
+    /**
+     * Reads all tests from the given markdown. Lines are matched with plain string comparisons in a single pass rather than regular expressions.
+     */
+    public List<PreviousResults> read(String testClass, Reader reader) throws IOException {
+
+        List<PreviousResults> returnList = new ArrayList<>();
+        PreviousResults previousResults = null;
+
+        List<String> thisTableColumns = null;
+        BufferedReader bufferedReader = new BufferedReader(reader);
+
+        CurrentPermutationDetails currentPermutationDetails = null;
+        Map<String, String> commonDetails = new HashMap<>();
+
+        String line;
+        int lineNumber = 0;
+        Section section = null;
+        String multiLineKey = null;
+        StringBuilder multiLineValue = null;
+
+        Set<String> tableColumns = new HashSet<>();
+
+        String testHash = null;
+
+        while ((line = bufferedReader.readLine()) != null) {
+            lineNumber++;
+
+            if (multiLineKey != null) {
+                if (line.equals("") || line.startsWith("    ")) {
+                    multiLineValue.append(line, Math.min(4, line.length()), line.length()).append("\n");
+                    continue;
+                } else {
+                    String value = multiLineValue.toString().trim();
+                    if (section.equals(Section.DEFINITION)) {
+                        currentPermutationDetails.parameters.put(multiLineKey, value);
+                        commonDetails.put(multiLineKey, value);
+                    } else if (section.equals(Section.NOTES)) {
+                        currentPermutationDetails.notes.put(multiLineKey, value);
+                    } else if (section.equals(Section.DATA)) {
+                        currentPermutationDetails.results.put(multiLineKey, value);
+                    } else if (section.equals(Section.ADDITIVE_DATA)) {
+                        currentPermutationDetails.additiveResults.put(multiLineKey, value);
+                    } else {
+                        throw new RuntimeException("Unknown multiline section on line " + lineNumber + ": " + section);
+                    }
+                    multiLineKey = null;
+                    multiLineValue = null;
+                }
+            }
+
+            if (line.startsWith("#")) {
+                String testName = between(line, TEST_START, "\" #");
+                if (testName != null) {
+                    if (previousResults != null) {
+                        saveLastPermutation(currentPermutationDetails, previousResults, tableColumns);
+                    }
+
+                    currentPermutationDetails = new CurrentPermutationDetails();
+                    commonDetails = new HashMap<>();
+                    section = Section.DEFINITION;
+                    tableColumns = new HashSet<>();
+
+                    previousResults = new PreviousResults(testClass, testName);
+                    returnList.add(previousResults);
+                    continue;
+                }
+
+                String version = between(line, TEST_VERSION, "\" #");
+                if (version != null) {
+                    testHash = version;
+                    continue;
+                }
+
+                String methodVersion = between(line, TEST_METHOD_VERSION, "\" ##");
+                if (methodVersion != null && previousResults != null) {
+                    previousResults.setTestHash(methodVersion);
+                    continue;
+                }
+
+                String environment = between(line, ENVIRONMENT, "\" ##");
+                if (environment != null && previousResults != null) {
+                    previousResults.setEnvironment(environment);
+                    continue;
+                }
+            }
+
+            if (line.equals("**NO PERMUTATIONS**")) {
+                continue;
+            }
+
+            if (StringUtils.trimToEmpty(line).equals("")) {
+                continue;
+            }
+
+            if (line.equals("#### Notes ####")) {
+                section = Section.NOTES;
+                continue;
+            } else if (line.equals("#### Results ####")) {
+                section = Section.DATA;
+                continue;
+            } else if (line.equals("#### Additive Results ####")) {
+                section = Section.ADDITIVE_DATA;
+                continue;
+            }
+
+            String[] permutationHeader = readPermutationHeader(line);
+            if (permutationHeader != null) {
+                saveLastPermutation(currentPermutationDetails, previousResults, tableColumns);
+                currentPermutationDetails = new CurrentPermutationDetails();
+                commonDetails = new HashMap<>();
+                section = Section.DEFINITION;
+                tableColumns = new HashSet<>();
+
+                currentPermutationDetails.key = permutationHeader[0];
+                String verifiedData = permutationHeader[1];
+
+                if (verifiedData.equals("(verified)")) {
+                    currentPermutationDetails.verified = true;
+                } else {
+                    currentPermutationDetails.verified = false;
+                    if (verifiedData.endsWith("_")) {
+                        verifiedData = verifiedData.substring(0, verifiedData.length() - 1);
+                    }
+                    int messageStart = verifiedData.indexOf(": ");
+                    String status = messageStart < 0 ? verifiedData : verifiedData.substring(0, messageStart);
+                    if (status.equals("_SKIPPED")) {
+                        currentPermutationDetails.skipped = true;
+                    } else if (!status.equals("_NOT VERIFIED")) {
+                        throw new RuntimeException("Did not expect " + status);
+                    }
+
+                    if (messageStart >= 0) {
+                        currentPermutationDetails.notRanMessage = verifiedData.substring(messageStart + 2);
+                    }
+                }
+                continue;
+            }
+
+            if (line.equals(ResultsWriter.SEPARATOR)) {
+                saveLastPermutation(currentPermutationDetails, previousResults, tableColumns);
+                currentPermutationDetails = new CurrentPermutationDetails();
+                commonDetails = new HashMap<>();
+                section = Section.DEFINITION;
+                continue;
+            }
+
+            if (line.startsWith(INTERNAL_KEY_VALUE) && isLineText(line, INTERNAL_KEY_VALUE.length(), line.length())) {
+                //key is greedy, so split on the last ":_ " that leaves a non-empty value
+                int split = line.lastIndexOf(":_ ", line.length() - 4);
+                if (split > INTERNAL_KEY_VALUE.length()) {
+                    String key = line.substring(INTERNAL_KEY_VALUE.length(), split);
+                    String value = line.substring(split + 3);
+                    if (key.equals("VERIFIED")) {
+                        currentPermutationDetails.setVerified(value);
+                    } else {
+                        currentPermutationDetails.setMetadata(key, value);
+                    }
+                    continue;
+                }
+            }
+
+            if (line.startsWith(KEY_VALUE) && isLineText(line, KEY_VALUE.length(), line.length())) {
+                int split = line.lastIndexOf(":** ");
+                if (split > KEY_VALUE.length()) {
+                    String key = line.substring(KEY_VALUE.length(), split);
+                    String value = line.substring(split + 4);
+
+                    if (section.equals(Section.DEFINITION)) {
+                        currentPermutationDetails.parameters.put(key, value);
+                        commonDetails.put(key, value);
+                    } else if (section.equals(Section.NOTES)) {
+                        currentPermutationDetails.notes.put(key, value);
+                    } else if (section.equals(Section.DATA)) {
+                        currentPermutationDetails.results.put(key, value);
+                    } else if (section.equals(Section.ADDITIVE_DATA)) {
+                        currentPermutationDetails.additiveResults.put(key, value);
+                    } else {
+                        throw new RuntimeException("Unknown section " + section);
+                    }
+                    continue;
+                }
+            }
+
+            if (line.startsWith("|")) {
+                List<String> values = splitTableRow(line);
+                if (line.startsWith("| Permutation ")) {
+                    thisTableColumns = new ArrayList<>();
+                    tableColumns = new HashSet<>(tableColumns); //already saved results share the previous set
+
+                    for (int i = 3; i < values.size() - 1; i++) { //ignoring first value that is an empty string and last value that is DETAILS
+                        tableColumns.add(values.get(i));
+                        thisTableColumns.add(values.get(i));
+                    }
+                } else if (line.startsWith("| :---")) {
+                    continue;
+                } else {
+                    if (!values.get(1).equals("")) { //otherwise a continuing row with more details
+                        saveLastPermutation(currentPermutationDetails, previousResults, tableColumns);
+                        currentPermutationDetails = new CurrentPermutationDetails();
+                        currentPermutationDetails.key = values.get(1);
+
+                        for (Map.Entry<String, String> entry : commonDetails.entrySet()) {
+                            currentPermutationDetails.parameters.put(entry.getKey(), entry.getValue());
+                        }
+                        currentPermutationDetails.setVerified(values.get(2));
+
+                        int columnNum = 0;
+                        try {
+                            for (int i = 3; i < values.size() - 1; i++) {
+                                if (!values.get(i).equals("")) {
+                                    currentPermutationDetails.parameters.put(thisTableColumns.get(columnNum), decode(values.get(i)));
+                                }
+                                columnNum++;
+                            }
+                        } catch (Throwable e) {
+                            throw new RuntimeException("Error parsing line " + line, e);
+                        }
+                    }
+                    readDetails(values.get(values.size() - 1), currentPermutationDetails);
+                }
+                continue;
+            }
+
+            String multiLineKeyValue = between(line, KEY_VALUE, " =>**");
+            if (multiLineKeyValue != null && multiLineKeyValue.length() > 0) {
+                multiLineKey = multiLineKeyValue;
+                multiLineValue = new StringBuilder();
+                continue;
+            }
+
+            if (currentPermutationDetails == null) {
+                //in the header section describing what the file is for
+            } else {
+                throw new RuntimeException("Could not parse line " + lineNumber + ": " + line);
+            }
+        }
+        saveLastPermutation(currentPermutationDetails, previousResults, tableColumns);
+
+        for (PreviousResults result : returnList) {
+            for (PermutationResult permutation : result.getResults()) {
+                if (result.getTestHash() == null) {
+                    permutation.setTestHash(testHash);
+                } else {
+                    permutation.setTestHash(result.getTestHash());
+                }
+            }
+        }
+
+
+        return returnList;
+    }
+
+    /**
+     * Returns the text between the given prefix and suffix if the line consists of exactly those, or null if it does not.
+     */
+    private String between(String line, String prefix, String suffix) {
+        if (line.length() < prefix.length() + suffix.length() || !line.startsWith(prefix) || !line.endsWith(suffix)) {
+            return null;
+        }
+        if (!isLineText(line, prefix.length(), line.length() - suffix.length())) {
+            return null;
+        }
+        return line.substring(prefix.length(), line.length() - suffix.length());
+    }
+
+    /**
+     * Returns the key and status of a "## Permutation KEY STATUS ##" line, or null if the line is not a permutation header.
+     * The key is everything up to the first whitespace, which must be a space.
+     */
+    private String[] readPermutationHeader(String line) {
+        if (!line.startsWith(PERMUTATION_START) || !line.endsWith(" ##")) {
+            return null;
+        }
+        int end = line.length() - 3;
+        int keyEnd = PERMUTATION_START.length();
+        while (keyEnd < line.length() && !isWhitespace(line.charAt(keyEnd))) {
+            keyEnd++;
+        }
+        if (keyEnd >= end || line.charAt(keyEnd) != ' ' || !isLineText(line, keyEnd + 1, end)) {
+            return null;
+        }
+        return new String[]{line.substring(PERMUTATION_START.length(), keyEnd), line.substring(keyEnd + 1, end)};
+    }
+
+    /**
+     * Splits a table row on unescaped "|" characters, trimming whitespace around each separator.
+     * The first value is always empty and trailing empty values are removed.
+     */
+    private List<String> splitTableRow(String line) {
+        List<String> values = new ArrayList<>();
+        values.add("");
+
+        int valueStart = 1;
+        int position = 0;
+        while (position < line.length() - 1) {
+            if (line.charAt(position) != '\\' && line.charAt(position + 1) == '|') {
+                values.add(trimWhitespace(line, valueStart, position + 1, true));
+                valueStart = position + 2;
+                position += 2;
+            } else {
+                position++;
+            }
+        }
+        values.add(trimWhitespace(line, valueStart, line.length(), false));
+
+        while (values.size() > 0 && values.get(values.size() - 1).equals("")) {
+            values.remove(values.size() - 1);
+        }
+        return values;
+    }
+
+    private String trimWhitespace(String line, int start, int end, boolean trimEnd) {
+        while (start < end && isWhitespace(line.charAt(start))) {
+            start++;
+        }
+        while (trimEnd && end > start && isWhitespace(line.charAt(end - 1))) {
+            end--;
+        }
+        return line.substring(start, end);
+    }
+
+    /**
+     * Reads the details column of a table row: "**key**: value", "**key** (additive): value", "__key__: value" or "_key_: value".
+     */
+    private void readDetails(String details, CurrentPermutationDetails currentPermutationDetails) {
+        if (isLineText(details, 0, details.length())) {
+            int split;
+            if (details.startsWith("**") && (split = details.indexOf("** (additive): ", 2)) >= 0) {
+                currentPermutationDetails.additiveResults.put(details.substring(2, split), decode(details.substring(split + 15)));
+                return;
+            }
+            if (details.startsWith("**") && (split = details.indexOf("**: ", 2)) >= 0) {
+                currentPermutationDetails.results.put(details.substring(2, split), decode(details.substring(split + 4)));
+                return;
+            }
+            if (details.startsWith("__") && (split = details.indexOf("__: ", 2)) >= 0) {
+                currentPermutationDetails.notes.put(details.substring(2, split), decode(details.substring(split + 4)));
+                return;
+            }
+            if (details.startsWith("_") && (split = details.indexOf("_: ", 1)) >= 0) {
+                currentPermutationDetails.setMetadata(details.substring(1, split), decode(details.substring(split + 3)));
+                return;
+            }
+        }
+        throw new RuntimeException("Unknown details column format: " + details);
+    }
+
+    /**
+     * Returns true if the given range contains no line terminators, the same characters "." does not match in a regular expression.
+     */
+    private boolean isLineText(String string, int start, int end) {
+        for (int i = start; i < end; i++) {
+            char c = string.charAt(i);
+            if (c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns true for the same whitespace characters as "\\s" in a regular expression.
+     */
+    private boolean isWhitespace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+    }
+
+    private void saveLastPermutation(CurrentPermutationDetails currentPermutationDetails, PreviousResults testRun, Set<String> tableColumns) {
+        if (currentPermutationDetails == null || currentPermutationDetails.verified == null) {
+            return;
+        }
+        PermutationResult result;
+        if (currentPermutationDetails.verified) {
+            result = new PermutationResult.Verified();
+        } else if (currentPermutationDetails.skipped) {
+            result = new PermutationResult.Invalid(currentPermutationDetails.notRanMessage);
+        } else {
+            result = new PermutationResult.Unverified(currentPermutationDetails.notRanMessage);
+        }
+
+        result.setStoredValues(currentPermutationDetails.key, currentPermutationDetails.parameters, tableColumns, currentPermutationDetails.notes,
+                currentPermutationDetails.results, currentPermutationDetails.additiveResults, currentPermutationDetails.metadata);
+
+        testRun.addResult(result);
+    }
+
+    private String decode(String string) {
+        if (string.indexOf('<') < 0 && string.indexOf('&') < 0) {
+            return string;
+        }
+        StringBuilder decoded = new StringBuilder(string.length());
+        int i = 0;
+        while (i < string.length()) {
+            if (string.startsWith("<br>", i)) {
+                decoded.append('\n');
+                i += 4;
+            } else if (string.startsWith("&#124;", i)) {
+                decoded.append('|');
+                i += 6;
+            } else {
+                decoded.append(string.charAt(i));
+                i++;
+            }
+        }
+        return decoded.toString();
+    }
+
+    private static class CurrentPermutationDetails {
+        private Map<String, String> parameters = new HashMap<>();
+        private Map<String, String> notes = new HashMap<>();
+        private Map<String, String> results = new HashMap<>();
+        private Map<String, String> additiveResults = new HashMap<>();
+        private Map<String, String> metadata = new HashMap<>();
+        private String key;
+        private Boolean verified;
+        private boolean skipped;
+        private String notRanMessage;
+
+        public CurrentPermutationDetails() {
+        }
+
+        protected void setMetadata(String key, String value) {
+            if (!key.equals(PermutationResult.CACHED_METADATA) && !key.equals(PermutationResult.VERIFIED_AT_METADATA) && !key.equals(PermutationResult.VERIFIED_BY_METADATA)) {
+                throw new RuntimeException("Unknown internal parameter " + key);
+            }
+            metadata.put(key, value);
+        }
+
+        protected void setVerified(String value) {
+            if (value.equals("true")) {
+                verified = true;
+            } else {
+                verified = false;
+                if (value.equals("SKIPPED") || value.startsWith("SKIPPED: ")) {
+                    skipped = true;
+                    value = value.substring(value.startsWith("SKIPPED: ") ? 9 : 7);
+                    if (value.equals("")) {
+                        return;
+                    }
+                }
+                if (!value.equals("false")) {
+                    notRanMessage = value;
+                }
+            }
+        }
+
+    }
+}
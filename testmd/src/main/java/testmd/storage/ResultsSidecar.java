@@ -0,0 +1,369 @@
+package testmd.storage;
+
+import org.slf4j.LoggerFactory;
+import testmd.PermutationResult;
+import testmd.PreviousResults;
+import testmd.util.StringUtils;
+
+import java.io.*;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+
+/**
+ * Compact binary index stored next to an accepted file as "Name.accepted.idx", used to check whether a permutation is verified and unchanged without parsing the markdown.
+ * For each permutation it stores whether the result is verified, a digest of the operations and additive operations, the test hash and the verification metadata.
+ * <br><br>
+ * The index records the size, last modified time and content hash of the accepted file it was built from. It is stale as soon as the size changes, or the last modified time changes and the content hash no longer matches.
+ * The file is read into memory once and queried in place: a Bloom filter rejects most unknown keys, then entries are found by binary search.
+ * Like {@link testmd.storage.ResultsIndex}, it is not memory-mapped so the index can be replaced while it is in use.
+ * The index is only a cache. It is safe to delete and does not need to be committed.
+ */
+public class ResultsSidecar {
+
+    private static final int MAGIC = 0x544d4458; //TMDX
+    private static final int VERSION = 1;
+    private static final int DIGEST_LENGTH = 20;
+    private static final int HEADER_LENGTH = 4 + 4 + 8 + 8 + DIGEST_LENGTH + 4 + 4 + 4 + 4;
+    private static final int ENTRY_LENGTH = 8 + 1 + DIGEST_LENGTH + DIGEST_LENGTH + 8 + 4 + 4;
+    private static final int BLOOM_BITS_PER_ENTRY = 10;
+    private static final int BLOOM_HASHES = 4;
+    private static final long NO_TIME = Long.MIN_VALUE;
+
+    private final File file;
+    private final ByteBuffer buffer;
+    private int bloomBits;
+    private int bloomHashes;
+    private int bloomStart;
+    private int entryCount;
+    private int entriesStart;
+    private String[] strings;
+
+    protected ResultsSidecar(File file, ByteBuffer buffer) {
+        this.file = file;
+        this.buffer = buffer;
+    }
+
+    /**
+     * Returns the index file used for the given accepted file.
+     */
+    public static File getSidecarFile(File acceptedFile) {
+        return new File(acceptedFile.getParentFile(), acceptedFile.getName().replaceFirst("\\.md$", "") + ".idx");
+    }
+
+    /**
+     * Reads the index of the given accepted file. Returns null if there is no index, or it is stale or unreadable.
+     */
+    public static ResultsSidecar open(File acceptedFile) {
+        File sidecarFile = getSidecarFile(acceptedFile);
+        if (!sidecarFile.exists() || !acceptedFile.exists()) {
+            return null;
+        }
+
+        try {
+            ResultsSidecar sidecar = new ResultsSidecar(sidecarFile, ResultsIndex.readFile(sidecarFile));
+            if (!sidecar.readHeader(acceptedFile)) {
+                LoggerFactory.getLogger(ResultsSidecar.class).debug("Index " + sidecarFile.getAbsolutePath() + " is out of date");
+                return null;
+            }
+            return sidecar;
+        } catch (IOException | BufferUnderflowException | IndexOutOfBoundsException | IllegalArgumentException e) {
+            LoggerFactory.getLogger(ResultsSidecar.class).debug("Cannot read index " + sidecarFile.getAbsolutePath() + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    private boolean readHeader(File acceptedFile) throws IOException {
+        ByteBuffer header = buffer.duplicate();
+        if (header.getInt() != MAGIC || header.getInt() != VERSION) {
+            return false;
+        }
+        long size = header.getLong();
+        long lastModified = header.getLong();
+        byte[] contentHash = new byte[DIGEST_LENGTH];
+        header.get(contentHash);
+
+        if (size != acceptedFile.length()) {
+            return false;
+        }
+        if (lastModified != acceptedFile.lastModified() && !Arrays.equals(contentHash, computeContentHash(acceptedFile))) {
+            return false;
+        }
+
+        bloomBits = header.getInt();
+        bloomHashes = header.getInt();
+        entryCount = header.getInt();
+        int stringCount = header.getInt();
+        if (bloomBits <= 0 || bloomHashes <= 0 || entryCount < 0 || stringCount < 0) {
+            return false;
+        }
+
+        bloomStart = HEADER_LENGTH;
+        entriesStart = bloomStart + bloomBits / 8;
+        ByteBuffer stringTable = buffer.duplicate();
+        stringTable.position(entriesStart + entryCount * ENTRY_LENGTH);
+        strings = new String[stringCount];
+        for (int i = 0; i < stringCount; i++) {
+            byte[] bytes = new byte[stringTable.getInt()];
+            stringTable.get(bytes);
+            strings[i] = new String(bytes, StandardCharsets.UTF_8);
+        }
+        return true;
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * Returns false if the given permutation is definitely not in the index. May return true for permutations that are not in the index.
+     */
+    public boolean mightContain(String testName, String environment, String key) {
+        return mightContain(computeKeyHash(testName, environment, key));
+    }
+
+    private boolean mightContain(long keyHash) {
+        int hash1 = (int) keyHash;
+        int hash2 = (int) (keyHash >>> 32);
+        for (int i = 0; i < bloomHashes; i++) {
+            int bit = ((hash1 + i * hash2) & Integer.MAX_VALUE) % bloomBits;
+            if ((buffer.get(bloomStart + bit / 8) & (1 << (bit % 8))) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the stored entry for the given permutation, or null if there is none.
+     */
+    public Entry find(String testName, String environment, String key) {
+        long keyHash = computeKeyHash(testName, environment, key);
+        if (!mightContain(keyHash)) {
+            return null;
+        }
+
+        int low = 0;
+        int high = entryCount - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int position = entriesStart + middle * ENTRY_LENGTH;
+            int compare = Long.compare(buffer.getLong(position), keyHash);
+            if (compare < 0) {
+                low = middle + 1;
+            } else if (compare > 0) {
+                high = middle - 1;
+            } else {
+                return readEntry(position);
+            }
+        }
+        return null;
+    }
+
+    private Entry readEntry(int position) {
+        ByteBuffer entryBuffer = buffer.duplicate();
+        entryBuffer.position(position + 8);
+
+        Entry entry = new Entry();
+        entry.verified = entryBuffer.get() != 0;
+        entry.resultsDigest = new byte[DIGEST_LENGTH];
+        entryBuffer.get(entry.resultsDigest);
+        entry.additiveResultsDigest = new byte[DIGEST_LENGTH];
+        entryBuffer.get(entry.additiveResultsDigest);
+        long verifiedAt = entryBuffer.getLong();
+        entry.verifiedAt = verifiedAt == NO_TIME ? null : verifiedAt;
+        entry.testHash = getString(entryBuffer.getInt());
+        entry.verifiedBy = getString(entryBuffer.getInt());
+        return entry;
+    }
+
+    private String getString(int index) {
+        if (index < 0) {
+            return null;
+        }
+        return strings[index];
+    }
+
+    /**
+     * Writes the index for the given accepted file, which must already contain the given results.
+     * Results without a test hash on their {@link testmd.PreviousResults} get the given file level hash, the same as when the file is read.
+     * Errors are logged and leave no index, since it is only a cache.
+     */
+    public static void write(File acceptedFile, String testHash, Collection<PreviousResults> results) {
+        File sidecarFile = getSidecarFile(acceptedFile);
+
+        SortedMap<Long, PermutationResult> entries = new TreeMap<>();
+        Map<PermutationResult, String> entryTestHashes = new HashMap<>();
+        for (PreviousResults previousResults : results) {
+            String resultsTestHash = previousResults.getTestHash() == null ? testHash : previousResults.getTestHash();
+            for (PermutationResult result : previousResults.getResults()) {
+                entries.put(computeKeyHash(previousResults.getTestName(), previousResults.getEnvironment(), result.getKey()), result);
+                entryTestHashes.put(result, resultsTestHash);
+            }
+        }
+
+        List<String> strings = new ArrayList<>();
+        Map<String, Integer> stringIndexes = new HashMap<>();
+        int bloomBits = Math.max(64, (entries.size() * BLOOM_BITS_PER_ENTRY + 63) / 64 * 64);
+        byte[] bloom = new byte[bloomBits / 8];
+
+        try {
+            File tempFile = new File(sidecarFile.getParentFile(), sidecarFile.getName() + ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeLong(acceptedFile.length());
+                out.writeLong(acceptedFile.lastModified());
+                out.write(computeContentHash(acceptedFile));
+                out.writeInt(bloomBits);
+                out.writeInt(BLOOM_HASHES);
+                out.writeInt(entries.size());
+
+                ByteArrayOutputStream entryBytes = new ByteArrayOutputStream(entries.size() * ENTRY_LENGTH);
+                DataOutputStream entryOut = new DataOutputStream(entryBytes);
+                for (Map.Entry<Long, PermutationResult> entry : entries.entrySet()) {
+                    long keyHash = entry.getKey();
+                    PermutationResult result = entry.getValue();
+
+                    int hash1 = (int) keyHash;
+                    int hash2 = (int) (keyHash >>> 32);
+                    for (int i = 0; i < BLOOM_HASHES; i++) {
+                        int bit = ((hash1 + i * hash2) & Integer.MAX_VALUE) % bloomBits;
+                        bloom[bit / 8] |= 1 << (bit % 8);
+                    }
+
+                    entryOut.writeLong(keyHash);
+                    entryOut.writeByte(result.isVerified() ? 1 : 0);
+                    entryOut.write(computeDigest(result.getResults()));
+                    entryOut.write(computeDigest(result.getAdditiveResults()));
+                    entryOut.writeLong(result.getVerifiedAt() == null ? NO_TIME : result.getVerifiedAt());
+                    entryOut.writeInt(addString(entryTestHashes.get(result), strings, stringIndexes));
+                    entryOut.writeInt(addString(result.getVerifiedBy(), strings, stringIndexes));
+                }
+
+                out.writeInt(strings.size());
+                out.write(bloom);
+                entryOut.flush();
+                entryBytes.writeTo(out);
+                for (String string : strings) {
+                    byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+                    out.writeInt(bytes.length);
+                    out.write(bytes);
+                }
+            }
+
+            try {
+                Files.move(tempFile.toPath(), sidecarFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tempFile.toPath(), sidecarFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            LoggerFactory.getLogger(ResultsSidecar.class).warn("Cannot write index " + sidecarFile.getAbsolutePath() + ": " + e.getMessage());
+            sidecarFile.delete();
+        }
+    }
+
+    private static int addString(String string, List<String> strings, Map<String, Integer> stringIndexes) {
+        if (string == null) {
+            return -1;
+        }
+        Integer index = stringIndexes.get(string);
+        if (index == null) {
+            index = strings.size();
+            strings.add(string);
+            stringIndexes.put(string, index);
+        }
+        return index;
+    }
+
+    /**
+     * Returns the first 8 bytes of the SHA-1 hash of the test name, environment and permutation key.
+     */
+    protected static long computeKeyHash(String testName, String environment, String key) {
+        MessageDigest digest = createDigest();
+        update(digest, testName);
+        update(digest, StringUtils.trimToEmpty(environment));
+        update(digest, key);
+        return ByteBuffer.wrap(digest.digest()).getLong();
+    }
+
+    /**
+     * Returns the SHA-1 hash of the given serialized values, in key order.
+     */
+    protected static byte[] computeDigest(Map<String, String> values) {
+        MessageDigest digest = createDigest();
+        for (Map.Entry<String, String> entry : new TreeMap<>(values).entrySet()) {
+            update(digest, entry.getKey());
+            update(digest, entry.getValue());
+        }
+        return digest.digest();
+    }
+
+    private static byte[] computeContentHash(File file) throws IOException {
+        MessageDigest digest = createDigest();
+        try (InputStream in = new FileInputStream(file)) {
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+            }
+        }
+        return digest.digest();
+    }
+
+    private static void update(MessageDigest digest, String value) {
+        if (value != null) {
+            digest.update(value.getBytes(StandardCharsets.UTF_8));
+        }
+        digest.update((byte) 0);
+    }
+
+    private static MessageDigest createDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Stored information about a single permutation.
+     */
+    public static class Entry {
+        private boolean verified;
+        private byte[] resultsDigest;
+        private byte[] additiveResultsDigest;
+        private String testHash;
+        private Long verifiedAt;
+        private String verifiedBy;
+
+        public boolean isVerified() {
+            return verified;
+        }
+
+        /**
+         * Returns true if the given serialized operations and additive operations are the same as the stored ones.
+         */
+        public boolean resultsMatch(Map<String, String> results, Map<String, String> additiveResults) {
+            return Arrays.equals(resultsDigest, computeDigest(results)) && Arrays.equals(additiveResultsDigest, computeDigest(additiveResults));
+        }
+
+        public String getTestHash() {
+            return testHash;
+        }
+
+        public Long getVerifiedAt() {
+            return verifiedAt;
+        }
+
+        public String getVerifiedBy() {
+            return verifiedBy;
+        }
+    }
+}
@@ -0,0 +1,453 @@
+package testmd.storage;
+
+import org.slf4j.LoggerFactory;
+import testmd.PermutationResult;
+import testmd.PreviousResults;
+import testmd.util.StringUtils;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+
+/**
+ * Writes results to stored markdown-based file. Files are written as UTF-8.
+ */
+public class ResultsWriter {
+
+    public static final String SEPARATOR = "---------------------------------------";
+    boolean wroteWarning = false;
+
+    public void write(File file, String testHash, Collection<PreviousResults> results) {
+
+        SortedSet<PreviousResults> sortedResults = new TreeSet<>(new Comparator<PreviousResults>() {
+            @Override
+            public int compare(PreviousResults o1, PreviousResults o2) {
+                int i = o1.getTestName().compareTo(o2.getTestName());
+                if (i == 0) {
+                    String environment1 = StringUtils.trimToEmpty(o1.getEnvironment());
+                    String environment2 = StringUtils.trimToEmpty(o2.getEnvironment());
+                    return environment1.compareTo(environment2);
+                }
+                return i;
+            }
+        });
+        sortedResults.addAll(results);
+
+        try {
+            file.getParentFile().mkdirs();
+
+            LoggerFactory.getLogger(getClass()).debug("Writing results to " + file.getAbsolutePath());
+
+            //write to a temporary file first so an interrupted write does not leave a partial results file
+            File tempFile = new File(file.getParentFile(), file.getName() + ".tmp");
+            try (Writer fileWriter = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(tempFile), StandardCharsets.UTF_8))) {
+                boolean first = true;
+                for (PreviousResults result : sortedResults) {
+                    if (first) {
+                        writeWarning(fileWriter);
+                        first = false;
+                    }
+                    writeTest(result.getTestClass(), result.getTestName(), result.getTestHash(), result.getEnvironment(), result.getResults(), fileWriter);
+                }
+
+                fileWriter.write("\n");
+                fileWriter.write("# Test Version: \""+testHash+"\" #");
+            }
+
+            try {
+                Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (Throwable e) {
+            e.printStackTrace();
+            throw new RuntimeException(e);
+        }
+
+
+    }
+
+    protected void write(String testClass, String testName, Collection<PermutationResult> results, Writer out) throws IOException {
+        if (!wroteWarning) {
+            writeWarning(out);
+            wroteWarning = true;
+        }
+
+        writeTest(testClass, testName, results, out);
+    }
+
+    protected void writeWarning(Writer out) throws IOException {
+        out.append("**NOTE: This output is generated and parsed by TestMD. Please read it, but DO NOT EDIT MANUALLY**\n");
+    }
+
+    protected void writeTest(String testClass, String testName, Collection<PermutationResult> results, Writer out) throws IOException {
+        writeTest(testClass, testName, null, results, out);
+    }
+
+    /**
+     * Writes the results of a single test. If testHash is not null, it is stored as the version of this test.
+     */
+    protected void writeTest(String testClass, String testName, String testHash, Collection<PermutationResult> results, Writer out) throws IOException {
+        writeTest(testClass, testName, testHash, null, results, out);
+    }
+
+    /**
+     * Writes the results of a single test. If environment is not null, the results are stored as belonging to that environment.
+     */
+    protected void writeTest(String testClass, String testName, String testHash, String environment, Collection<PermutationResult> results, Writer out) throws IOException {
+        out.append("\n# Test: \"").append(testName).append("\" #\n\n");
+        if (environment != null) {
+            out.append("## Environment: \"").append(environment).append("\" ##\n\n");
+        }
+        if (testHash != null) {
+            out.append("## Test Version: \"").append(testHash).append("\" ##\n\n");
+        }
+
+        if (results.size() == 0) {
+            out.append("**NO PERMUTATIONS**\n");
+        } else if (shouldPrintTables(results)) {
+            printWithTables(results, out);
+        } else {
+            printWithoutTables(results, out);
+        }
+
+        out.flush();
+    }
+
+    protected boolean shouldPrintTables(Collection<PermutationResult> results) {
+        if (results == null || results.size() == 0) {
+            return false;
+        }
+
+        PermutationResult result = results.iterator().next();
+        return result.getTableParameters() != null && result.getTableParameters().size() > 0;
+
+    }
+
+    protected void printWithoutTables(Collection<PermutationResult> passedResults, Writer out) throws IOException {
+        List<PermutationResult> results = new ArrayList(passedResults);
+        Collections.sort(results);
+
+        int i = 0;
+        for (PermutationResult result : results) {
+            i++;
+            if (!shouldWrite(result)) {
+                continue;
+            }
+
+            out.append("## Permutation ").append(result.getKey());
+            if (result.isVerified()) {
+                out.append(" (verified)");
+            } else {
+                out.append(result.isValid() ? " _NOT VERIFIED" : " _SKIPPED");
+                if (result.getNotVerifiedMessage() != null) {
+                    out.append(": ").append(result.getNotVerifiedMessage());
+                }
+                out.append("_");
+            }
+            out.append(" ##\n\n");
+
+            for (Map.Entry<String, String> entry : result.getParameters().entrySet()) {
+                appendMapEntry(entry, out);
+            }
+
+            for (Map.Entry<String, String> entry : result.getMetadata().entrySet()) {
+                out.append("- _").append(entry.getKey()).append(":_ ").append(entry.getValue()).append("\n");
+            }
+
+            if (result.getNotes().size() > 0) {
+                out.append("\n");
+                out.append("#### Notes ####\n");
+                out.append("\n");
+
+                for (Map.Entry<String, String> entry : result.getNotes().entrySet()) {
+                    appendMapEntry(entry, out);
+                }
+            }
+
+            if (result.getResults().entrySet().size() > 0) {
+                out.append("\n");
+                out.append("#### Results ####\n");
+                out.append("\n");
+
+                for (Map.Entry<String, String> entry : result.getResults().entrySet()) {
+                    appendMapEntry(entry, out);
+                }
+            }
+
+            if (result.getAdditiveResults().size() > 0) {
+                out.append("\n");
+                out.append("#### Additive Results ####\n");
+                out.append("\n");
+
+                for (Map.Entry<String, String> entry : result.getAdditiveResults().entrySet()) {
+                    appendMapEntry(entry, out);
+                }
+            }
+
+            if (i < results.size()) {
+                out.append("\n"+SEPARATOR+"\n\n");
+            }
+        }
+    }
+
+    protected void printWithTables(Collection<PermutationResult> passedResults, Writer out) throws IOException {
+        SortedMap<String, List<PermutationResult>> resultsByTable = new TreeMap<String, List<PermutationResult>>();
+        for (PermutationResult result : passedResults) {
+            String tableKey = result.getTableKey();
+            if (!resultsByTable.containsKey(tableKey)) {
+                resultsByTable.put(tableKey, new ArrayList<PermutationResult>());
+            }
+            resultsByTable.get(tableKey).add(result);
+        }
+
+        if (resultsByTable.isEmpty()) {
+            return;
+        }
+
+        int testCount = 0;
+        int resultIndex = 0;
+        for (Map.Entry<String, List<PermutationResult>> entry : resultsByTable.entrySet()) {
+            resultIndex++;
+            List<PermutationResult> tableResults = new ArrayList<PermutationResult>();
+            for (PermutationResult result : entry.getValue()) {
+                if (shouldWrite(result)) {
+                    tableResults.add(result);
+                }
+            }
+
+            if (tableResults.size() == 0) {
+                continue;
+            }
+
+            if (testCount++ > 0) {
+                out.append(SEPARATOR + "\n\n");
+            }
+
+            boolean hasParams = false;
+            for (Map.Entry<String, String> descriptionEntry : tableResults.get(0).getParameters().entrySet()) {
+                if (!tableResults.get(0).getTableParameters().contains(descriptionEntry.getKey())) {
+                    appendMapEntry(descriptionEntry, out);
+                    hasParams = true;
+                }
+            }
+
+
+            SortedMap<String, Integer> maxColumnLengths = new TreeMap<String, Integer>();
+            int permutationNameColLength = "Permutation".length();
+            int verifiedColLength = "Verified".length();
+
+            Map<String, String> verifiedMessages = new HashMap<String, String>();
+            for (PermutationResult result : tableResults) {
+                if (result.getKey().length() > permutationNameColLength) {
+                    permutationNameColLength = result.getKey().length();
+                }
+
+                String verifiedMessage = StringUtils.trimToNull(result.getNotVerifiedMessage());
+                if (!result.isValid()) {
+                    verifiedMessage = "SKIPPED" + (verifiedMessage == null ? "" : ": " + verifiedMessage);
+                } else if (verifiedMessage == null) {
+                    verifiedMessage = String.valueOf(result.isVerified());
+                }
+                verifiedMessages.put(result.getKey(), verifiedMessage);
+
+                if (verifiedMessage.length() > verifiedColLength) {
+                    verifiedColLength = verifiedMessage.length();
+                }
+                for (String columnName : result.getTableParameters()) {
+                    Integer oldMax = maxColumnLengths.get(columnName);
+                    if (oldMax == null) {
+                        oldMax = columnName.length();
+                        maxColumnLengths.put(columnName, oldMax);
+                    }
+                    String storedValue = result.getParameters().get(columnName);
+                    if (storedValue != null) {
+                        if (oldMax < storedValue.length()) {
+                            maxColumnLengths.put(columnName, storedValue.length());
+                        }
+                    }
+                }
+            }
+
+            String[] columnNames = maxColumnLengths.keySet().toArray(new String[maxColumnLengths.size()]);
+            int[] columnLengths = new int[columnNames.length];
+            for (int i = 0; i < columnNames.length; i++) {
+                columnLengths[i] = maxColumnLengths.get(columnNames[i]);
+            }
+
+            if (hasParams) {
+                out.append("\n");
+            }
+
+            StringBuilder row = new StringBuilder();
+            row.append("| ");
+            appendPadded(row, "Permutation", permutationNameColLength);
+            row.append(" | ");
+            appendPadded(row, "Verified", verifiedColLength);
+            row.append(" |");
+            for (int i = 0; i < columnNames.length; i++) {
+                row.append(" ");
+                appendPadded(row, columnNames[i], columnLengths[i]);
+                row.append(" |");
+            }
+            row.append(" OPERATIONS\n");
+
+            row.append("| :");
+            appendRepeated(row, '-', permutationNameColLength - 1);
+            row.append(" | :");
+            appendRepeated(row, '-', verifiedColLength - 1);
+            row.append(" |");
+            for (int columnLength : columnLengths) {
+                row.append(" :");
+                appendRepeated(row, '-', columnLength - 1);
+                row.append(" |");
+            }
+            row.append(" :------\n");
+            out.append(row);
+
+            //rows are sorted by their cells. Rows with the same cells are only written once
+            SortedMap<String, PermutationResult> permutationRows = new TreeMap<String, PermutationResult>();
+            for (PermutationResult result : tableResults) {
+                row.setLength(0);
+                for (int i = 0; i < columnNames.length; i++) {
+                    String cellValue = result.getParameters().get(columnNames[i]);
+                    row.append(" ");
+                    appendPadded(row, cellValue == null ? "" : clean(cellValue), columnLengths[i]);
+                    row.append(" |");
+                }
+                permutationRows.put(row.toString(), result);
+            }
+
+            row.setLength(0);
+            row.append("| ");
+            appendRepeated(row, ' ', permutationNameColLength);
+            row.append(" | ");
+            appendRepeated(row, ' ', verifiedColLength);
+            row.append(" |");
+            for (int columnLength : columnLengths) {
+                row.append(" ");
+                appendRepeated(row, ' ', columnLength);
+                row.append(" |");
+            }
+            String detailPrefix = row.toString();
+
+            for (Map.Entry<String, PermutationResult> rowEntry : permutationRows.entrySet()) {
+                PermutationResult result = rowEntry.getValue();
+
+                row.setLength(0);
+                row.append("| ");
+                appendPadded(row, result.getKey(), permutationNameColLength);
+                row.append(" | ");
+                appendPadded(row, verifiedMessages.get(result.getKey()), verifiedColLength);
+                row.append(" |");
+                row.append(rowEntry.getKey());
+
+                boolean firstDetail = true;
+                for (Map.Entry<String, String> notesEntry : result.getNotes().entrySet()) {
+                    firstDetail = appendDetail(row, firstDetail, detailPrefix, " __", notesEntry.getKey(), "__: ", notesEntry.getValue());
+                }
+                for (Map.Entry<String, String> dataEntry : result.getResults().entrySet()) {
+                    firstDetail = appendDetail(row, firstDetail, detailPrefix, " **", dataEntry.getKey(), "**: ", dataEntry.getValue());
+                }
+                for (Map.Entry<String, String> additiveEntry : result.getAdditiveResults().entrySet()) {
+                    firstDetail = appendDetail(row, firstDetail, detailPrefix, " **", additiveEntry.getKey(), "** (additive): ", additiveEntry.getValue());
+                }
+                for (Map.Entry<String, String> metadataEntry : result.getMetadata().entrySet()) {
+                    firstDetail = appendDetail(row, firstDetail, detailPrefix, " _", metadataEntry.getKey(), "_: ", metadataEntry.getValue());
+                }
+
+                out.append(row);
+            }
+            if (resultIndex < resultsByTable.size()) {
+                out.append("\n");
+            }
+        }
+    }
+
+    /**
+     * Appends a line of the operations column. Lines after the first are prefixed with empty cells. Returns false so it can be passed back as firstDetail.
+     */
+    private boolean appendDetail(StringBuilder row, boolean firstDetail, String detailPrefix, String keyStart, String key, String keyEnd, String value) {
+        if (!firstDetail) {
+            row.append(detailPrefix);
+        }
+        row.append(keyStart).append(key).append(keyEnd);
+        appendClean(row, value);
+        row.append("\n");
+        return false;
+    }
+
+    /**
+     * Appends the trimmed value followed by enough spaces to fill the given length, the same as {@link testmd.util.StringUtils#pad(String, int)}.
+     */
+    private void appendPadded(StringBuilder builder, String value, int length) {
+        value = StringUtils.trimToEmpty(value);
+        builder.append(value);
+        appendRepeated(builder, ' ', length - value.length());
+    }
+
+    private void appendRepeated(StringBuilder builder, char c, int times) {
+        for (int i = 0; i < times; i++) {
+            builder.append(c);
+        }
+    }
+
+    /**
+     * Returns true if the given result should be stored. Invalid results are only stored if they are cached.
+     */
+    protected boolean shouldWrite(PermutationResult result) {
+        return result.isValid() || result.getCachedAt() != null;
+    }
+
+    private String clean(String string) {
+        StringBuilder builder = new StringBuilder(string.length() + 16);
+        appendClean(builder, string);
+        return builder.toString();
+    }
+
+    /**
+     * Appends the value with line breaks replaced by &lt;br&gt; and pipes escaped so it fits in a single table cell.
+     */
+    private void appendClean(StringBuilder builder, String string) {
+        int length = string.length();
+        for (int i = 0; i < length; i++) {
+            char c = string.charAt(i);
+            if (c == '\r' && i + 1 < length && string.charAt(i + 1) == '\n') {
+                continue;
+            }
+            if (c == '\n') {
+                builder.append("<br>");
+            } else if (c == '|') {
+                builder.append("&#124;");
+            } else {
+                builder.append(c);
+            }
+        }
+    }
+
+    private void appendMapEntry(Map.Entry<String, String> entry, Writer out) throws IOException {
+        String value = entry.getValue();
+        value  = value.replace("\r\n", "\n");
+
+        boolean multiLine = value.contains("\n");
+
+        out.append("- **").append(entry.getKey());
+
+        if (multiLine) {
+            out.append(" =>**\n");
+        } else {
+            out.append(":** ");
+        }
+        if (multiLine) {
+            out.append(StringUtils.indent(value, 4));
+        } else {
+            out.append(value);
+        }
+
+        out.append("\n");
+    }
+
+}
@@ -0,0 +1,264 @@
+package testmd.storage;
+
+import org.slf4j.LoggerFactory;
+import testmd.PermutationResult;
+import testmd.PreviousResults;
+import testmd.util.StringUtils;
+
+import java.io.File;
+import java.util.*;
+
+/**
+ * Finds test classes that cannot run any permutation, so a build tool can exclude them from the test run entirely.
+ * A class is only considered skippable when all the following are true:
+ * <ul>
+ * <li>Test hashes are computed in {@link testmd.storage.TestManager.HashMode#BYTECODE} mode, so changes to production classes are detected</li>
+ * <li>Nothing forces permutations to run again: no testmd.forceRun, testmd.plan, testmd.reverifyCount or testmd.reverifyBudget</li>
+ * <li>An accepted file exists for the class</li>
+ * <li>Every JUnit test method or Spock feature in the class has a section in the accepted file for the current environment</li>
+ * <li>Every permutation in those sections is verified and was saved with the current bytecode hash of the class</li>
+ * </ul>
+ * Anything that cannot be checked, such as a class that fails to load, counts as not skippable.
+ * <br><br>
+ * Permutations whose operations depend on data outside the compiled classes, such as resource files or environment variables, would normally be re-run when that data changes.
+ * Do not skip classes containing such tests.
+ */
+public class SkipAnalyzer {
+
+    private final ClassLoader testClassLoader;
+    private final File resultsDirectory;
+    private final BytecodeHasher bytecodeHasher;
+    private final ResultsReader resultsReader = new ResultsReader();
+
+    private TestManager.HashMode hashMode = TestManager.HashMode.CLASS;
+    private String environment;
+    private boolean forceRun = false;
+    private boolean plan = false;
+    private boolean reverify = false;
+
+    /**
+     * Creates an analyzer for test classes loaded by the given class loader, with accepted files stored under resultsDirectory (normally src/test/resources).
+     * Settings default to the same system properties read by {@link testmd.storage.TestManager}.
+     */
+    public SkipAnalyzer(ClassLoader testClassLoader, File resultsDirectory) {
+        this.testClassLoader = testClassLoader;
+        this.resultsDirectory = resultsDirectory;
+        this.bytecodeHasher = new BytecodeHasher(testClassLoader);
+
+        String hashModeProperty = StringUtils.trimToNull(System.getProperty("testmd.hashMode"));
+        if (hashModeProperty != null) {
+            hashMode = TestManager.HashMode.valueOf(hashModeProperty.toUpperCase());
+        }
+
+        setEnvironment(System.getProperty("testmd.environment"));
+
+        String forceRunProperty = StringUtils.trimToNull(System.getProperty("testmd.forceRun"));
+        if (forceRunProperty == null) {
+            forceRunProperty = StringUtils.trimToNull(System.getProperty("testmd.forcerun"));
+        }
+        forceRun = forceRunProperty != null && Boolean.valueOf(forceRunProperty);
+
+        String planProperty = StringUtils.trimToNull(System.getProperty("testmd.plan"));
+        plan = planProperty != null && Boolean.valueOf(planProperty);
+
+        reverify = StringUtils.trimToNull(System.getProperty("testmd.reverifyCount")) != null
+                || StringUtils.trimToNull(System.getProperty("testmd.reverifyBudget")) != null;
+    }
+
+    /**
+     * Sets a cache used to avoid re-reading class files that have not changed.
+     */
+    public void setHashCache(HashCache hashCache) {
+        bytecodeHasher.setHashCache(hashCache);
+    }
+
+    public TestManager.HashMode getHashMode() {
+        return hashMode;
+    }
+
+    /**
+     * Sets the hash mode the tests run with. Classes are only skipped in {@link testmd.storage.TestManager.HashMode#BYTECODE} mode.
+     * This value can also be set with the "testmd.hashMode" system property.
+     */
+    public void setHashMode(TestManager.HashMode hashMode) {
+        this.hashMode = hashMode;
+    }
+
+    public String getEnvironment() {
+        return environment;
+    }
+
+    /**
+     * Sets the environment the tests run in. Only results saved for the same environment are checked.
+     * This value can also be set with the "testmd.environment" system property.
+     */
+    public void setEnvironment(String environment) {
+        this.environment = TestManager.canonicalizeEnvironment(environment);
+    }
+
+    public boolean isForceRun() {
+        return forceRun;
+    }
+
+    /**
+     * Set to true if the tests run with testmd.forceRun. No classes are skipped.
+     */
+    public void setForceRun(boolean forceRun) {
+        this.forceRun = forceRun;
+    }
+
+    public boolean isPlan() {
+        return plan;
+    }
+
+    /**
+     * Set to true if the tests run in plan mode. No classes are skipped so the plan covers all permutations.
+     */
+    public void setPlan(boolean plan) {
+        this.plan = plan;
+    }
+
+    public boolean isReverify() {
+        return reverify;
+    }
+
+    /**
+     * Set to true if the tests run with testmd.reverifyCount or testmd.reverifyBudget. No classes are skipped since any verified permutation may be re-verified.
+     */
+    public void setReverify(boolean reverify) {
+        this.reverify = reverify;
+    }
+
+    /**
+     * Returns the names of the given classes that can be skipped, in the given order.
+     */
+    public List<String> findSkippable(Collection<String> classNames) {
+        List<String> returnList = new ArrayList<>();
+        if (getGlobalReason() != null) {
+            LoggerFactory.getLogger(getClass()).info("Not skipping any test classes: " + getGlobalReason());
+            return returnList;
+        }
+        for (String className : classNames) {
+            if (canSkip(className)) {
+                returnList.add(className);
+            }
+        }
+        return returnList;
+    }
+
+    /**
+     * Returns true if the given test class cannot run any permutation.
+     */
+    public boolean canSkip(String className) {
+        String reason = getRunReason(className);
+        if (reason == null) {
+            LoggerFactory.getLogger(getClass()).debug("Can skip " + className + ": all permutations are verified and unchanged");
+            return true;
+        }
+        LoggerFactory.getLogger(getClass()).debug("Cannot skip " + className + ": " + reason);
+        return false;
+    }
+
+    /**
+     * Returns why the given test class must run, or null if it can be skipped.
+     */
+    public String getRunReason(String className) {
+        String globalReason = getGlobalReason();
+        if (globalReason != null) {
+            return globalReason;
+        }
+
+        File file = getAcceptedFile(className);
+        if (!file.exists()) {
+            return "no accepted file " + file.getAbsolutePath();
+        }
+
+        Set<String> testNames;
+        try {
+            testNames = findTestNames(className);
+        } catch (Throwable e) {
+            return "cannot load class: " + e.getMessage();
+        }
+        if (testNames.isEmpty()) {
+            return "no test methods found";
+        }
+
+        String currentHash = bytecodeHasher.computeHash(className);
+        if (currentHash == null) {
+            return "cannot compute bytecode hash";
+        }
+
+        Map<String, PreviousResults> previousResults = new HashMap<>();
+        try {
+            for (List<PreviousResults> testResults : ResultsIndex.build(file).read(className, testNames, resultsReader).values()) {
+                for (PreviousResults results : testResults) {
+                    if (StringUtils.trimToEmpty(environment).equals(StringUtils.trimToEmpty(results.getEnvironment()))) {
+                        previousResults.put(results.getTestName(), results);
+                    }
+                }
+            }
+        } catch (Exception e) {
+            return "cannot read " + file.getAbsolutePath() + ": " + e.getMessage();
+        }
+
+        for (String testName : testNames) {
+            PreviousResults results = previousResults.get(testName);
+            if (results == null || results.getResults().isEmpty()) {
+                return "no saved results for " + testName;
+            }
+            for (PermutationResult result : results.getResults()) {
+                if (!result.isVerified()) {
+                    return "not all permutations in " + testName + " are verified";
+                }
+                if (!currentHash.equals(result.getTestHash())) {
+                    return "test hash changed for " + testName;
+                }
+            }
+        }
+
+        return null;
+    }
+
+    protected String getGlobalReason() {
+        if (hashMode != TestManager.HashMode.BYTECODE) {
+            return "hash mode is " + hashMode + ", not BYTECODE";
+        }
+        if (forceRun) {
+            return "testmd.forceRun is set";
+        }
+        if (plan) {
+            return "testmd.plan is set";
+        }
+        if (reverify) {
+            return "re-verification is enabled";
+        }
+        return null;
+    }
+
+    /**
+     * Returns the accepted file for the given class, using the same layout as {@link testmd.storage.TestManager}.
+     */
+    protected File getAcceptedFile(String className) {
+        String testPackageDir = className.replaceFirst("\\.[^\\.]*$", "").replace(".", "/");
+        if (!className.contains(".")) {
+            testPackageDir = "";
+        }
+        String fileName = className.replaceFirst(".*\\.", "") + ".accepted.md";
+
+        return new File(new File(resultsDirectory, testPackageDir), fileName);
+    }
+
+    /**
+     * Returns the test names used by the JUnit test methods and Spock features of the given class, including those inherited from superclasses.
+     * Annotations are matched by name so neither JUnit nor Spock need to be on the classpath of the caller.
+     */
+    protected Set<String> findTestNames(String className) throws Exception {
+        Set<String> testNames = new TreeSet<>();
+        Class<?> testClass = Class.forName(className, false, testClassLoader);
+        while (testClass != null && testClass != Object.class) {
+            testNames.addAll(TestManager.findDeclaredTestNames(testClass));
+            testClass = testClass.getSuperclass();
+        }
+        return testNames;
+    }
+}
@@ -0,0 +1,1487 @@
+package testmd.storage;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import testmd.*;
+import testmd.util.SourceUtils;
+import testmd.util.StringUtils;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * ResultsManager contains the logic used by TestMD to save results.
+ * The default implementation registers with {@link testmd.storage.ResultsFlusher} which persists results to disk in a single Runtime shutdown hook.
+ */
+public class TestManager {
+
+    /**
+     * Controls how the test hash used to detect changes to test logic is computed.
+     */
+    public enum HashMode {
+        /**
+         * A single hash of the source files of the test class and its superclasses. Any change to the class re-runs all tests in the group.
+         */
+        CLASS,
+
+        /**
+         * A hash of the source of each test method, stored per test. Only tests whose method changed are re-ran.
+         * The hash also covers the rest of the source of the class and its superclasses without the test methods, so changes to fields, helper methods or setup re-run all tests.
+         * Tests that cannot be matched to a method in the source fall back to the {@link #CLASS} hash.
+         */
+        METHOD,
+
+        /**
+         * A hash of the compiled test class and all classes it transitively references that are loaded from directories rather than jars, with debug information removed.
+         * Does not require source files and includes changes to helper and production classes. See {@link testmd.storage.BytecodeHasher}
+         */
+        BYTECODE
+    }
+
+    /**
+     * Controls which permutations are compared when looking for permutations with identical operations. See {@link #setVerifyOnce(VerifyOnce)}
+     */
+    public enum VerifyOnce {
+        /**
+         * Every permutation is verified on its own.
+         */
+        OFF,
+
+        /**
+         * Permutations in the same test with identical operations are verified once.
+         */
+        TEST,
+
+        /**
+         * Permutations in the same test group with identical operations are verified once.
+         */
+        GROUP,
+
+        /**
+         * Permutations in any test group with identical operations are verified once.
+         */
+        GLOBAL
+    }
+
+    private static final Map<List<Object>, String> globalVerifiedSignatures = new HashMap<>();
+    private static final Map<List<Object>, String> globalRanSignatures = new HashMap<>();
+
+    private static final String SHARED_SOURCE_CACHE_KIND = "shared-source";
+    private static final String JUNIT_TEST = "org.junit.Test";
+    private static final String JUNIT_IGNORE = "org.junit.Ignore";
+    private static final String SPOCK_FEATURE = "org.spockframework.runtime.model.FeatureMetadata";
+
+    private static BytecodeHasher bytecodeHasher;
+    private static HashCache hashCache;
+    private static ChangeSelector changeSelector;
+    private static boolean changeSelectorRead = false;
+    private static ExecutorService hashExecutor;
+    private static final Map<String, URL> classUrls = new HashMap<>();
+    private static final Map<String, File> classSources = new HashMap<>();
+
+    private final String testGroup;
+    private final Class inSameClassRoot;
+    private String baseOutputDirectory;
+
+    private final Map<String, List<Permutation>> permutations = new HashMap<>();
+    private final Map<String, PreviousResults> previousResults = new HashMap<>();
+    private final List<PreviousResults> otherEnvironmentResults = new ArrayList<>();
+    private ResultsIndex resultsIndex;
+    private ResultsSidecar resultsSidecar;
+    private final Set<String> loadedTests = new HashSet<>();
+    private final Map<String, Future<String>> currentTestHashes = new HashMap<>();
+    private final Map<String, String> currentMethodHashes = new HashMap<>();
+    private final Map<String, Map<String, Set<Normalizer>>> normalizers = new HashMap<>();
+    private final Map<String, Map<String, String>> parameterAliases = new HashMap<>();
+    private final Map<String, Map<String, String>> parameterDefaults = new HashMap<>();
+    private HashMode hashMode = HashMode.CLASS;
+    private boolean negativeResultCache = false;
+    private Long negativeResultTtl;
+    private boolean partialSave = false;
+    private boolean strictFormats = false;
+    private boolean sidecarIndex = false;
+    private String environment;
+    private Integer reverifyCount;
+    private Long reverifyBudget;
+    private Set<PermutationResult> reverifyCandidates;
+    private long reverifyTimeSpent = 0;
+    private VerifyOnce verifyOnce = VerifyOnce.OFF;
+    private boolean plan = false;
+    private boolean untouched = false;
+    private final Map<List<Object>, String> verifiedSignatures = new HashMap<>();
+    private final Map<List<Object>, String> ranSignatures = new HashMap<>();
+    private ResultsReader resultsReader;
+    private ResultsWriter resultsWriter;
+
+
+    public TestManager(String testGroup, Class inSameClassRoot, ResultsReader resultsReader, ResultsWriter resultsWriter) {
+        this.testGroup = testGroup;
+        this.inSameClassRoot = inSameClassRoot;
+        this.resultsReader = resultsReader;
+        this.resultsWriter = resultsWriter;
+
+        String baseDirectoryProperty = System.getProperty("testmd.base_directory");
+        if (baseDirectoryProperty != null) {
+            baseOutputDirectory = baseDirectoryProperty;
+        } else {
+            baseOutputDirectory = getDefaultBaseDirectory();
+        }
+
+        String hashModeProperty = StringUtils.trimToNull(System.getProperty("testmd.hashMode"));
+        if (hashModeProperty != null) {
+            hashMode = HashMode.valueOf(hashModeProperty.toUpperCase());
+        }
+
+        String negativeResultCacheProperty = StringUtils.trimToNull(System.getProperty("testmd.negativeResultCache"));
+        if (negativeResultCacheProperty != null) {
+            negativeResultCache = Boolean.valueOf(negativeResultCacheProperty);
+        }
+
+        String partialSaveProperty = StringUtils.trimToNull(System.getProperty("testmd.partialSave"));
+        if (partialSaveProperty != null) {
+            partialSave = Boolean.valueOf(partialSaveProperty);
+        }
+
+        String strictFormatsProperty = StringUtils.trimToNull(System.getProperty("testmd.strictFormats"));
+        if (strictFormatsProperty != null) {
+            strictFormats = Boolean.valueOf(strictFormatsProperty);
+        }
+
+        String sidecarIndexProperty = StringUtils.trimToNull(System.getProperty("testmd.sidecarIndex"));
+        if (sidecarIndexProperty != null) {
+            sidecarIndex = Boolean.valueOf(sidecarIndexProperty);
+        }
+
+        setEnvironment(System.getProperty("testmd.environment"));
+
+        String planProperty = StringUtils.trimToNull(System.getProperty("testmd.plan"));
+        if (planProperty != null) {
+            plan = Boolean.valueOf(planProperty);
+        }
+
+        String verifyOnceProperty = StringUtils.trimToNull(System.getProperty("testmd.verifyOnce"));
+        if (verifyOnceProperty != null) {
+            verifyOnce = VerifyOnce.valueOf(verifyOnceProperty.toUpperCase());
+        }
+
+        String reverifyCountProperty = StringUtils.trimToNull(System.getProperty("testmd.reverifyCount"));
+        if (reverifyCountProperty != null) {
+            try {
+                reverifyCount = Integer.valueOf(reverifyCountProperty);
+            } catch (NumberFormatException e) {
+                throw new RuntimeException("Invalid testmd.reverifyCount value: " + reverifyCountProperty, e);
+            }
+        }
+
+        String reverifyBudgetProperty = StringUtils.trimToNull(System.getProperty("testmd.reverifyBudget"));
+        if (reverifyBudgetProperty != null) {
+            try {
+                reverifyBudget = Long.valueOf(reverifyBudgetProperty);
+            } catch (NumberFormatException e) {
+                throw new RuntimeException("Invalid testmd.reverifyBudget value: " + reverifyBudgetProperty, e);
+            }
+        }
+
+        String negativeResultTtlProperty = StringUtils.trimToNull(System.getProperty("testmd.negativeResultTtl"));
+        if (negativeResultTtlProperty != null) {
+            try {
+                negativeResultTtl = Long.valueOf(negativeResultTtlProperty);
+            } catch (NumberFormatException e) {
+                throw new RuntimeException("Invalid testmd.negativeResultTtl value: " + negativeResultTtlProperty, e);
+            }
+        }
+    }
+
+    public void init() {
+        File file = this.getOutputFile();
+        ChangeSelector selector = getChangeSelector();
+        if (selector != null && !isAffected(selector)) {
+            untouched = true;
+            LoggerFactory.getLogger(TestMD.class).info("Not running " + testGroup + ": untouched by changed files. Keeping " + file.getAbsolutePath() + " as-is");
+            return;
+        }
+
+        if (!this.currentTestHashes.containsKey(testGroup)) {
+            this.currentTestHashes.put(testGroup, getHashExecutor().submit(new Callable<String>() {
+                @Override
+                public String call() throws Exception {
+                    return readTestHash();
+                }
+            }));
+        }
+
+        try {
+            if (file.exists()) {
+                LoggerFactory.getLogger(TestMD.class).debug("Found previous run stored at " + file.getAbsolutePath());
+
+                this.resultsIndex = ResultsIndex.build(file);
+
+                if (sidecarIndex) {
+                    this.resultsSidecar = ResultsSidecar.open(file);
+                    if (resultsSidecar == null) {
+                        LoggerFactory.getLogger(TestMD.class).debug("Rebuilding index " + ResultsSidecar.getSidecarFile(file).getAbsolutePath());
+                        loadAllPreviousResults();
+                        List<PreviousResults> allResults = new ArrayList<>(previousResults.values());
+                        allResults.addAll(otherEnvironmentResults);
+                        ResultsSidecar.write(file, resultsIndex.getTestHash(), allResults);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Error loading previous results", e);
+        }
+
+        if (resultsWriter == null) {
+            LoggerFactory.getLogger(getClass()).warn("Cannot save " + testGroup + ": No ResultsWriter defined");
+        } else {
+            this.scheduleWriteResults();
+        }
+    }
+
+    /**
+     * Returns true if the given changed files may affect this test group.
+     */
+    protected boolean isAffected(ChangeSelector selector) {
+        Set<String> dependencies = null;
+        if (hashMode == HashMode.BYTECODE) {
+            dependencies = getBytecodeHasher().findDependencies(testGroup);
+        }
+        return selector.isAffected(getOutputFile(), getOutputBase(inSameClassRoot), getTestSources(), dependencies);
+    }
+
+    /**
+     * Returns the source files of the test class and the superclasses included in the test hash.
+     */
+    protected List<File> getTestSources() {
+        List<File> sources = new ArrayList<>();
+        Class<?> testClass = null;
+        try {
+            testClass = Class.forName(testGroup);
+        } catch (ClassNotFoundException e) {
+            LoggerFactory.getLogger(getClass()).debug("Cannot find class for test " + testGroup + ". Cannot find sources");
+        }
+
+        while (testClass != null) {
+            if (includeInTestHash(testClass)) {
+                File sourceFile = getClassSource(testClass);
+                if (sourceFile != null) {
+                    sources.add(sourceFile);
+                }
+            }
+            testClass = testClass.getSuperclass();
+        }
+        return sources;
+    }
+
+    /**
+     * Returns the changed files used to select which test groups run, or null if all test groups run.
+     * Changed files are read from the file in the "testmd.changedFiles" system property, which can be a list of paths or a unified diff,
+     * or from the local git working tree compared to the commit in the "testmd.changedSince" system property.
+     */
+    protected ChangeSelector getChangeSelector() {
+        synchronized (TestManager.class) {
+            if (!changeSelectorRead) {
+                String changedFilesProperty = StringUtils.trimToNull(System.getProperty("testmd.changedFiles"));
+                String changedSinceProperty = StringUtils.trimToNull(System.getProperty("testmd.changedSince"));
+                if (changedFilesProperty != null) {
+                    try (Reader reader = new InputStreamReader(new FileInputStream(changedFilesProperty), "UTF-8")) {
+                        changeSelector = new ChangeSelector(ChangeSelector.readChangedFiles(reader));
+                    } catch (IOException e) {
+                        throw new RuntimeException("Error reading testmd.changedFiles " + changedFilesProperty, e);
+                    }
+                } else if (changedSinceProperty != null) {
+                    changeSelector = new ChangeSelector(ChangeSelector.readGitChanges(new File(".").getAbsoluteFile(), changedSinceProperty));
+                }
+                if (changeSelector != null) {
+                    LoggerFactory.getLogger(TestMD.class).info("Selecting test groups affected by " + changeSelector.getChangedFiles().size() + " changed file(s)");
+                }
+                changeSelectorRead = true;
+            }
+            return changeSelector;
+        }
+    }
+
+    /**
+     * Returns true if this test group is not affected by the changed files in "testmd.changedFiles" or "testmd.changedSince".
+     * Permutations in untouched test groups are reported as skipped without running and the accepted file is not loaded or written.
+     */
+    public boolean isUntouched() {
+        return untouched;
+    }
+
+    protected String getDefaultBaseDirectory() {
+        return "../../src/test/resources";
+    }
+
+    protected String readTestHash() {
+        if (hashMode == HashMode.BYTECODE) {
+            String hash = getBytecodeHasher().computeHash(testGroup);
+            if (hash == null) {
+                LoggerFactory.getLogger(getClass()).debug("Cannot find compiled class for test " + testGroup + ". Cannot check bytecode hash");
+            }
+            return hash;
+        }
+
+        String testHashes = "";
+        Class testClass = null;
+        try {
+            testClass = Class.forName(testGroup);
+        } catch (ClassNotFoundException e) {
+            LoggerFactory.getLogger(getClass()).debug("Cannot find class for test " + testGroup + ". Cannot check source hash");
+        }
+
+        while (testClass != null) {
+            if (includeInTestHash(testClass)) {
+                String testHash = computeSourceHash(testClass);
+                if (testHash == null) {
+                    return null;
+                }
+
+                testHashes += testHash + "\n";
+            }
+            testClass = testClass.getSuperclass();
+        }
+
+        if (testHashes.length() == 0) {
+            LoggerFactory.getLogger(getClass()).debug("No test class hashes found.");
+            return null;
+        }
+
+        try {
+            MessageDigest md = MessageDigest.getInstance("SHA-1");
+            md.update(testHashes.getBytes());
+            byte[] digest = md.digest();
+            return new String(StringUtils.encodeHex(digest)).substring(0, 6);
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Computes the hash of the source of the method for the given test, searching the test class and the superclasses included in the test hash.
+     * Returns null if the method cannot be found.
+     */
+    protected String readMethodHash(String testName) {
+        Class<?> testClass = null;
+        try {
+            testClass = Class.forName(testGroup);
+        } catch (ClassNotFoundException e) {
+            LoggerFactory.getLogger(getClass()).debug("Cannot find class for test " + testGroup + ". Cannot check method hash");
+        }
+
+        String methodHash = null;
+        List<String> sharedHashes = new ArrayList<>();
+        while (testClass != null) {
+            if (includeInTestHash(testClass)) {
+                File sourceFile = getClassSource(testClass);
+                if (sourceFile != null) {
+                    try {
+                        if (methodHash == null) {
+                            String cacheKind = "method:" + testName;
+                            String hash = getHashCache().get(sourceFile, cacheKind);
+                            if (hash == null) {
+                                String methodSource = SourceUtils.findMethodSource(new String(Files.readAllBytes(sourceFile.toPath()), "UTF-8"), testName);
+                                hash = methodSource == null ? "" : StringUtils.computeHash(methodSource).substring(0, 6);
+                                getHashCache().put(sourceFile, cacheKind, hash);
+                            }
+                            if (hash.length() > 0) {
+                                methodHash = hash;
+                            }
+                        }
+
+                        //everything but the test methods: fields, helper methods, setup and constants can change the result of any test in the class
+                        String sharedHash = getHashCache().get(sourceFile, SHARED_SOURCE_CACHE_KIND);
+                        if (sharedHash == null) {
+                            String sharedSource = SourceUtils.removeMethods(new String(Files.readAllBytes(sourceFile.toPath()), "UTF-8"), findDeclaredTestNames(testClass));
+                            sharedHash = sharedSource == null ? "" : StringUtils.computeHash(sharedSource).substring(0, 6);
+                            getHashCache().put(sourceFile, SHARED_SOURCE_CACHE_KIND, sharedHash);
+                        }
+                        sharedHashes.add(sharedHash);
+                    } catch (Exception e) {
+                        throw new RuntimeException("Error computing method hash for " + testName, e);
+                    }
+                }
+            }
+            testClass = testClass.getSuperclass();
+        }
+
+        if (methodHash == null) {
+            LoggerFactory.getLogger(getClass()).debug("Cannot find source for test method " + testName + " in " + testGroup + ". Using class hash");
+            return null;
+        }
+        return StringUtils.computeHash(methodHash + " " + StringUtils.join(sharedHashes, " ", false)).substring(0, 6);
+    }
+
+    /**
+     * Returns the test names used by the JUnit test methods and Spock features declared in the given class, not including superclasses.
+     * Annotations are matched by name so neither JUnit nor Spock need to be on the classpath.
+     */
+    static Set<String> findDeclaredTestNames(Class<?> testClass) throws Exception {
+        Set<String> testNames = new TreeSet<>();
+        for (Method method : testClass.getDeclaredMethods()) {
+            Annotation junitTest = null;
+            Annotation spockFeature = null;
+            boolean ignored = false;
+            for (Annotation annotation : method.getAnnotations()) {
+                String annotationName = annotation.annotationType().getName();
+                if (annotationName.equals(JUNIT_TEST)) {
+                    junitTest = annotation;
+                } else if (annotationName.equals(SPOCK_FEATURE)) {
+                    spockFeature = annotation;
+                } else if (annotationName.equals(JUNIT_IGNORE)) {
+                    ignored = true;
+                }
+            }
+
+            if (junitTest != null && !ignored) {
+                testNames.add(method.getName());
+            } else if (spockFeature != null) {
+                testNames.add((String) spockFeature.annotationType().getMethod("name").invoke(spockFeature));
+            }
+        }
+        return testNames;
+    }
+
+    protected BytecodeHasher getBytecodeHasher() {
+        synchronized (TestManager.class) {
+            if (bytecodeHasher == null) {
+                bytecodeHasher = new BytecodeHasher(this.getClass().getClassLoader());
+                bytecodeHasher.setHashCache(getHashCache());
+            }
+            return bytecodeHasher;
+        }
+    }
+
+    /**
+     * Returns the cache of source and class file hashes shared by all TestManagers.
+     * By default, it is stored in the parent of the class root of inSameClassRoot (the Maven "target" directory).
+     * The location can also be set with the "testmd.hashCache" system property.
+     */
+    protected HashCache getHashCache() {
+        synchronized (TestManager.class) {
+            if (hashCache == null) {
+                File storeFile = null;
+                String hashCacheProperty = StringUtils.trimToNull(System.getProperty("testmd.hashCache"));
+                if (hashCacheProperty != null) {
+                    storeFile = new File(hashCacheProperty);
+                } else if (inSameClassRoot != null) {
+                    File classRoot = getClassRoot(inSameClassRoot.getName());
+                    if (classRoot != null && classRoot.getParentFile() != null) {
+                        storeFile = new File(classRoot.getParentFile(), "testmd-hash-cache.properties");
+                    }
+                }
+
+                final HashCache cache = new HashCache(storeFile);
+                ResultsFlusher.getInstance().runAfterFlush(new Runnable() {
+                    @Override
+                    public void run() {
+                        cache.save();
+                    }
+                });
+                hashCache = cache;
+            }
+            return hashCache;
+        }
+    }
+
+    /**
+     * Returns the executor used to compute test hashes without blocking test execution.
+     */
+    protected static ExecutorService getHashExecutor() {
+        synchronized (TestManager.class) {
+            if (hashExecutor == null) {
+                hashExecutor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), new ThreadFactory() {
+                    @Override
+                    public Thread newThread(Runnable runnable) {
+                        Thread thread = new Thread(runnable, "testmd-hash");
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+            }
+            return hashExecutor;
+        }
+    }
+
+    /**
+     * Returns the URL of the given classpath resource. Lookups are cached for all TestManagers.
+     */
+    protected URL getClassUrl(String resourceName) {
+        synchronized (classUrls) {
+            if (!classUrls.containsKey(resourceName)) {
+                classUrls.put(resourceName, this.getClass().getClassLoader().getResource(resourceName));
+            }
+            return classUrls.get(resourceName);
+        }
+    }
+
+    /**
+     * Returns the root of the classpath directory or jar containing the given class, or null if the class cannot be found.
+     */
+    protected File getClassRoot(String className) {
+        URL classUrl = getClassUrl(className.replace(".", "/") + ".class");
+        if (classUrl == null) {
+            return null;
+        }
+        int packageLevels = className.replaceAll("[^.]", "").length();
+
+        File classRoot = new File(classUrl.getFile()).getParentFile();
+        for (int i = 0; i < packageLevels; i++) {
+            classRoot = classRoot.getParentFile();
+        }
+        return classRoot;
+    }
+
+    protected boolean includeInTestHash(Class clazz) {
+        String name = clazz.getCanonicalName();
+        if (name == null) {
+            return false;
+        }
+
+        URL classUrl = getClassUrl(name.replace(".", "/") + ".class");
+        if (classUrl == null || !classUrl.getProtocol().equals("file") || classUrl.toExternalForm().contains("jar:")) {
+            return false;
+        }
+
+        return name.startsWith(testGroup.replaceFirst("\\..*", "."));
+    }
+
+    protected String computeSourceHash(Class clazz) {
+        File sourceFile = getClassSource(clazz);
+        if (sourceFile == null) {
+            LoggerFactory.getLogger(getClass()).debug("Cannot find source file for "+clazz.getName()+". Cannot check source hash");
+            return null;
+        }
+
+        String cachedHash = getHashCache().get(sourceFile, "source");
+        if (cachedHash != null) {
+            return cachedHash;
+        }
+
+        try {
+            MessageDigest md = MessageDigest.getInstance("SHA-1");
+            try (InputStream is = Files.newInputStream(sourceFile.toPath());
+                 DigestInputStream dis = new DigestInputStream(is, md)) {
+                byte[] buf = new byte[20480];
+                while (dis.read(buf) != -1) {
+                    ; //digest is updating
+                }
+            }
+            byte[] digest = md.digest();
+            String hash = new String(StringUtils.encodeHex(digest)).substring(0, 6);
+            getHashCache().put(sourceFile, "source", hash);
+            return hash;
+
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    protected File getClassSource(Class clazz) {
+        String className = clazz.getCanonicalName();
+        synchronized (classSources) {
+            if (!classSources.containsKey(className)) {
+                classSources.put(className, findClassSource(className));
+            }
+            return classSources.get(className);
+        }
+    }
+
+    protected File findClassSource(String className) {
+        File classRoot = getClassRoot(className);
+        if (classRoot == null) {
+            return null;
+        }
+
+        List<File> sourceRoots = Arrays.asList(
+                new File(classRoot, "../../src/test/groovy"),
+                new File(classRoot, "../../src/test/java")
+        );
+        List<String> extensions = Arrays.asList(".groovy", ".java");
+
+        for (File sourceRoot : sourceRoots) {
+            for (String extension : extensions) {
+                File file = new File(sourceRoot, className.replace(".", "/") + extension);
+                if (file.exists()) {
+                    return file;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Configures the directory relative to the classpath root where the class under test is stored to use as the base directory to store results.
+     * Default value is "../../src/test/resources" which matches the Maven standard directory structure.
+     * This value can also be set with the "testmd.base_directory" system property.
+     */
+    public void setBaseDirectory(String baseDirectory) {
+        this.baseOutputDirectory = baseDirectory;
+    }
+
+    public HashMode getHashMode() {
+        return hashMode;
+    }
+
+    /**
+     * Configures how the test hash is computed. Default value is {@link HashMode#CLASS}.
+     * This value can also be set with the "testmd.hashMode" system property.
+     */
+    public void setHashMode(HashMode hashMode) {
+        this.hashMode = hashMode;
+    }
+
+    public boolean isNegativeResultCache() {
+        return negativeResultCache;
+    }
+
+    /**
+     * Configures whether permutations skipped by setup or that cannot be verified are saved and reused on later runs without calling setup again.
+     * Cached results are only reused while the operations and test hash are unchanged and the {@link #setNegativeResultTtl(Long)} has not expired.
+     * Default value is false. This value can also be set with the "testmd.negativeResultCache" system property.
+     */
+    public void setNegativeResultCache(boolean negativeResultCache) {
+        this.negativeResultCache = negativeResultCache;
+    }
+
+    public Long getNegativeResultTtl() {
+        return negativeResultTtl;
+    }
+
+    /**
+     * Configures the number of minutes a cached skipped or unverified result is reused before setup is ran again. Null means cached results never expire.
+     * This value can also be set with the "testmd.negativeResultTtl" system property.
+     */
+    public void setNegativeResultTtl(Long negativeResultTtl) {
+        this.negativeResultTtl = negativeResultTtl;
+    }
+
+    public boolean isPartialSave() {
+        return partialSave;
+    }
+
+    /**
+     * Configures whether results are saved when some permutations fail.
+     * If true, all permutations that did not fail are saved and failed permutations keep their previously saved entry, marked as not verified so they run again.
+     * If false, no results are saved for the test group if any permutation fails.
+     * Default value is false. This value can also be set with the "testmd.partialSave" system property.
+     */
+    public void setPartialSave(boolean partialSave) {
+        this.partialSave = partialSave;
+    }
+
+    public boolean isStrictFormats() {
+        return strictFormats;
+    }
+
+    /**
+     * Configures whether permutations fail if a parameter or operation contains an unordered Set or Map such as a HashSet or HashMap.
+     * Use to find values whose formatting may depend on iteration order. Default value is false.
+     * This value can also be set with the "testmd.strictFormats" system property.
+     */
+    public void setStrictFormats(boolean strictFormats) {
+        this.strictFormats = strictFormats;
+    }
+
+    public boolean isSidecarIndex() {
+        return sidecarIndex;
+    }
+
+    /**
+     * Configures whether a binary index is kept next to each accepted file, so verified and unchanged permutations are found without parsing the accepted file.
+     * The index is rebuilt whenever the accepted file changed. It is not used in {@link HashMode#METHOD} mode or when re-verification is enabled.
+     * Default value is false. This value can also be set with the "testmd.sidecarIndex" system property. Must be set before {@link #init()} is called.
+     */
+    public void setSidecarIndex(boolean sidecarIndex) {
+        this.sidecarIndex = sidecarIndex;
+    }
+
+    public String getEnvironment() {
+        return environment;
+    }
+
+    /**
+     * Configures the environment the tests are running in, such as "db=postgresql-9.4, jdk=1.8".
+     * Results are stored separately for each environment and results for other environments are kept unchanged, so switching between environments does not cause permutations to run again.
+     * Environments made of comma separated key=value dimensions are stored in sorted order. Default value is null, meaning no specific environment.
+     * This value can also be set with the "testmd.environment" system property. Must be set before {@link #init()} is called.
+     */
+    public void setEnvironment(String environment) {
+        this.environment = canonicalizeEnvironment(environment);
+    }
+
+    /**
+     * Returns the given environment with surrounding whitespace removed. If all comma separated parts are key=value dimensions they are sorted by key.
+     */
+    protected static String canonicalizeEnvironment(String environment) {
+        environment = StringUtils.trimToNull(environment);
+        if (environment == null) {
+            return null;
+        }
+
+        SortedMap<String, String> dimensions = new TreeMap<>();
+        for (String dimension : environment.split(",")) {
+            String[] split = dimension.split("=", 2);
+            if (split.length != 2) {
+                return environment;
+            }
+            dimensions.put(split[0].trim(), split[1].trim());
+        }
+        return StringUtils.join(dimensions, ", ", true);
+    }
+
+    public Integer getReverifyCount() {
+        return reverifyCount;
+    }
+
+    /**
+     * Configures the maximum number of verified permutations in this test group to verify again on each run, starting with the ones verified longest ago.
+     * Over multiple runs all permutations are verified again without any single run verifying everything. Default value is null, meaning no permutations are verified again unless they changed.
+     * This value can also be set with the "testmd.reverifyCount" system property.
+     */
+    public void setReverifyCount(Integer reverifyCount) {
+        this.reverifyCount = reverifyCount;
+    }
+
+    public Long getReverifyBudget() {
+        return reverifyBudget;
+    }
+
+    /**
+     * Configures the maximum number of seconds spent verifying unchanged permutations again in this test group on each run.
+     * If no {@link #setReverifyCount(Integer)} is set, permutations not verified in the most recent run are verified again until the budget is used.
+     * This value can also be set with the "testmd.reverifyBudget" system property.
+     */
+    public void setReverifyBudget(Long reverifyBudget) {
+        this.reverifyBudget = reverifyBudget;
+    }
+
+    /**
+     * Returns true if the verification time of results should be recorded and unchanged permutations may be verified again.
+     */
+    public boolean isReverifyEnabled() {
+        return (reverifyCount != null && reverifyCount > 0) || (reverifyBudget != null && reverifyBudget > 0);
+    }
+
+    /**
+     * Returns true if the given verified previous result should be verified again even though it is unchanged.
+     */
+    public synchronized boolean shouldReverify(PermutationResult previousResult) {
+        if (!isReverifyEnabled() || previousResult == null || !previousResult.isVerified()) {
+            return false;
+        }
+        if (reverifyBudget != null && reverifyBudget > 0 && reverifyTimeSpent >= reverifyBudget * 1000) {
+            return false;
+        }
+        return getReverifyCandidates().contains(previousResult);
+    }
+
+    /**
+     * Records time spent verifying an unchanged permutation again, counted against {@link #setReverifyBudget(Long)}
+     */
+    public synchronized void addReverifyTime(long milliseconds) {
+        reverifyTimeSpent += milliseconds;
+    }
+
+    /**
+     * Returns the previous results that may be verified again in this run, oldest first.
+     * Results without a recorded verification time are considered the oldest.
+     */
+    protected Set<PermutationResult> getReverifyCandidates() {
+        if (reverifyCandidates == null) {
+            loadAllPreviousResults();
+            List<PermutationResult> verified = new ArrayList<>();
+            for (PreviousResults results : previousResults.values()) {
+                for (PermutationResult result : results.getResults()) {
+                    if (result.isVerified()) {
+                        verified.add(result);
+                    }
+                }
+            }
+            Collections.sort(verified, new Comparator<PermutationResult>() {
+                @Override
+                public int compare(PermutationResult o1, PermutationResult o2) {
+                    int i = Long.compare(getVerifiedAt(o1), getVerifiedAt(o2));
+                    if (i == 0) {
+                        return o1.getKey().compareTo(o2.getKey());
+                    }
+                    return i;
+                }
+            });
+
+            if (reverifyCount == null || reverifyCount <= 0) {
+                //without a count, only use results older than the last run so each run continues where the last one stopped
+                if (verified.size() > 0) {
+                    long newest = getVerifiedAt(verified.get(verified.size() - 1));
+                    if (getVerifiedAt(verified.get(0)) < newest) {
+                        List<PermutationResult> older = new ArrayList<>();
+                        for (PermutationResult result : verified) {
+                            if (getVerifiedAt(result) < newest) {
+                                older.add(result);
+                            }
+                        }
+                        verified = older;
+                    }
+                }
+            } else if (verified.size() > reverifyCount) {
+                verified = verified.subList(0, reverifyCount);
+            }
+
+            reverifyCandidates = Collections.newSetFromMap(new IdentityHashMap<PermutationResult, Boolean>());
+            reverifyCandidates.addAll(verified);
+        }
+        return reverifyCandidates;
+    }
+
+    private long getVerifiedAt(PermutationResult result) {
+        Long verifiedAt = result.getVerifiedAt();
+        return verifiedAt == null ? 0 : verifiedAt;
+    }
+
+    public VerifyOnce getVerifyOnce() {
+        return verifyOnce;
+    }
+
+    /**
+     * Configures whether permutations with identical operations are verified only once.
+     * When a permutation is verified, other permutations in the configured scope with the same operations are marked as verified without running setup or verification.
+     * Default value is {@link VerifyOnce#OFF}. This value can also be set with the "testmd.verifyOnce" system property.
+     */
+    public void setVerifyOnce(VerifyOnce verifyOnce) {
+        this.verifyOnce = verifyOnce;
+    }
+
+    /**
+     * Records that the given permutation is verified so later permutations with identical operations do not need to be verified again.
+     * Set ran to true if the verification logic was executed in this run, or false if the permutation was verified on an earlier run and is unchanged.
+     */
+    public void addVerifiedSignature(String testName, Permutation permutation, boolean ran) {
+        List<Object> signature = getSignature(testName, permutation);
+        if (signature == null) {
+            return;
+        }
+        String description = testGroup + " / " + testName + " / " + permutation.getKey();
+        if (verifyOnce == VerifyOnce.GLOBAL) {
+            synchronized (globalVerifiedSignatures) {
+                addSignature(globalVerifiedSignatures, globalRanSignatures, signature, description, ran);
+            }
+        } else {
+            synchronized (verifiedSignatures) {
+                addSignature(verifiedSignatures, ranSignatures, signature, description, ran);
+            }
+        }
+    }
+
+    private void addSignature(Map<List<Object>, String> verified, Map<List<Object>, String> ran, List<Object> signature, String description, boolean wasRan) {
+        if (!verified.containsKey(signature)) {
+            verified.put(signature, description);
+        }
+        if (wasRan && !ran.containsKey(signature)) {
+            ran.put(signature, description);
+        }
+    }
+
+    /**
+     * Returns a description of an already verified permutation with the same operations as the given permutation, or null if there is none.
+     * If ranOnly is true, only permutations whose verification logic was executed in this run are returned. Permutations verified against an older test hash cannot verify a permutation whose test hash changed.
+     */
+    public String findVerifiedSignature(String testName, Permutation permutation, boolean ranOnly) {
+        List<Object> signature = getSignature(testName, permutation);
+        if (signature == null) {
+            return null;
+        }
+        if (verifyOnce == VerifyOnce.GLOBAL) {
+            synchronized (globalVerifiedSignatures) {
+                return (ranOnly ? globalRanSignatures : globalVerifiedSignatures).get(signature);
+            }
+        } else {
+            synchronized (verifiedSignatures) {
+                return (ranOnly ? ranSignatures : verifiedSignatures).get(signature);
+            }
+        }
+    }
+
+    /**
+     * Returns the value identifying permutations with identical operations in the configured {@link VerifyOnce} scope. Returns null if verify once is off or the permutation has no operations.
+     */
+    protected List<Object> getSignature(String testName, Permutation permutation) {
+        if (verifyOnce == null || verifyOnce == VerifyOnce.OFF || permutation.getOperations().size() == 0) {
+            return null;
+        }
+        SortedMap<String, String> operations = new TreeMap<>();
+        for (Map.Entry<String, Value> entry : permutation.getOperations().entrySet()) {
+            operations.put(entry.getKey(), permutation.serializeOperation(entry.getKey(), entry.getValue()));
+        }
+
+        List<Object> signature = new ArrayList<>();
+        if (verifyOnce == VerifyOnce.TEST) {
+            signature.add(testName);
+        }
+        signature.add(operations);
+        return signature;
+    }
+
+    public boolean isPlan() {
+        return plan;
+    }
+
+    /**
+     * Configures plan mode. In plan mode permutations only evaluate whether they would run and why, setup, verification and cleanup logic are never called and results are not saved.
+     * A report of all evaluated permutations is written to the file set by the "testmd.planFile" system property, defaulting to testmd-plan.md in the parent of the class root (normally target/).
+     * Default value is false. This value can also be set with the "testmd.plan" system property.
+     */
+    public void setPlan(boolean plan) {
+        this.plan = plan;
+    }
+
+    /**
+     * Adds the given permutation, which has already been evaluated with {@link Permutation#plan(PermutationResult)}, to the plan report.
+     */
+    public void addToPlan(String testName, Permutation permutation) {
+        PlanReport report = PlanReport.getInstance();
+        if (report.getFile() == null) {
+            report.setFile(getPlanFile());
+        }
+        report.add(testGroup, testName, permutation);
+    }
+
+    protected File getPlanFile() {
+        String planFile = StringUtils.trimToNull(System.getProperty("testmd.planFile"));
+        if (planFile != null) {
+            return new File(planFile);
+        }
+        File classRoot = getClassRoot(inSameClassRoot.getName());
+        if (classRoot == null) {
+            return new File("testmd-plan.md").getAbsoluteFile();
+        }
+        return new File(classRoot.getParentFile(), "testmd-plan.md");
+    }
+
+    protected void scheduleWriteResults() {
+        if (plan || untouched) {
+            return;
+        }
+        ResultsFlusher.getInstance().register(this);
+    }
+
+    protected void writeResults() {
+        SortedMap<String, PreviousResults> finalResults = new TreeMap<>();
+
+        Logger log = LoggerFactory.getLogger(getClass());
+        Map<String, List<Permutation>> permutations = getPermutationsSnapshot();
+        if (permutations.size() == 0) {
+            log.debug("No permutations to save for  " + testGroup);
+            return;
+        }
+
+        boolean canSave = true;
+        boolean somethingRan = false;
+        for (Map.Entry<String, List<Permutation>> entry : permutations.entrySet()) {
+            if (!canSave) {
+                break;
+            }
+            String testName = entry.getKey();
+            List<Permutation> permutationList = entry.getValue();
+
+            for (Permutation permutation : permutationList) {
+                if (!canSave) {
+                    break;
+                }
+                PermutationResult result = permutation.getTestResult();
+                if (permutation.wasRan() || permutation.getRunReason() == RunReason.VERIFIED_BY_EQUIVALENT || additiveResultsChanged(testName, permutation)) {
+                    //results verified through an equivalent permutation did not run but differ from what was saved
+                    somethingRan = true;
+                }
+
+                if (result != null && !result.isSavable() && partialSave) {
+                    log.debug("Keeping previous result for failed permutation " + permutation.toString());
+                    result = toFailedOnLastRun(getPreviousResult(testName, permutation));
+                    if (result == null) {
+                        continue;
+                    }
+                }
+                if (result == null) {
+                    //not finished yet, e.g. results are flushed while the test is still running. Keep what was saved for it before if it was saved for the current code
+                    PermutationResult previousResult = getPreviousResult(testName, permutation);
+                    if (previousResult != null && hasCurrentTestHash(testName, previousResult)) {
+                        getFinalResults(finalResults, testName).addResult(previousResult);
+                    }
+                } else {
+                    if (result.isSavable()) {
+                        getFinalResults(finalResults, testName).addResult(result);
+                    } else {
+                        log.debug("Not saving " + testGroup);
+                        canSave = false;
+                        break;
+                    }
+                }
+            }
+        }
+
+        if (!somethingRan && resultsIndex != null && finalResults.keySet().containsAll(resultsIndex.getTestNames())) {
+            log.debug("No permutations executed for " + testGroup + ", do not write results");
+            return;
+        }
+
+        Map<String, PreviousResults> previousResults;
+        List<PreviousResults> otherEnvironmentResults;
+        synchronized (this) {
+            loadAllPreviousResults();
+            previousResults = new HashMap<>(this.previousResults);
+            otherEnvironmentResults = new ArrayList<>(this.otherEnvironmentResults);
+        }
+
+        boolean onlyOneTestRan = finalResults.size() == 1;
+        Set<String> removedTests = new HashSet<>();
+        for (Map.Entry<String, PreviousResults> entry : previousResults.entrySet()) {
+            String testName = entry.getKey();
+
+            if (!finalResults.containsKey(testName)) {
+                if (permutations.containsKey(testName)) {
+                    //still in the test suite, none of its permutations has a result yet
+                    finalResults.put(testName, keepTestHash(entry.getValue()));
+                } else if (onlyOneTestRan && previousResults.size() > 1) {
+                    //only one test ran this time but there used to be others. Probably running a single test manually
+                    finalResults.put(testName, keepTestHash(entry.getValue()));
+                } else {
+                    log.info("Test " + testName + " was in the accepted results, but not in the test suite. Removing it from the accepted file.");
+                    removedTests.add(testName);
+                    somethingRan = true;
+                }
+            }
+        }
+
+        List<PreviousResults> resultsToWrite = new ArrayList<>(finalResults.values());
+        for (PreviousResults otherResults : otherEnvironmentResults) {
+            if (!removedTests.contains(otherResults.getTestName())) {
+                resultsToWrite.add(keepTestHash(otherResults));
+            }
+        }
+
+
+        if (!somethingRan) {
+            log.debug("No permutations executed for " + testGroup + ", do not write results");
+            return;
+        }
+
+        if (canSave) {
+            resultsWriter.write(getOutputFile(), getCurrentTestHash(testGroup), resultsToWrite);
+            if (sidecarIndex) {
+                ResultsSidecar.write(getOutputFile(), getCurrentTestHash(testGroup), resultsToWrite);
+            }
+        }
+    }
+
+    private PreviousResults getFinalResults(SortedMap<String, PreviousResults> finalResults, String testName) {
+        PreviousResults results = finalResults.get(testName);
+        if (results == null) {
+            results = new PreviousResults(testGroup, testName);
+            results.setEnvironment(environment);
+            if (hashMode == HashMode.METHOD) {
+                results.setTestHash(getCurrentMethodHash(testName));
+            }
+            finalResults.put(testName, results);
+        }
+        return results;
+    }
+
+    /**
+     * Returns false if the given result was saved with a test hash different from the current one, so it was verified against other code.
+     */
+    private boolean hasCurrentTestHash(String testName, PermutationResult result) {
+        String currentHash = getCurrentTestHash(testGroup, testName);
+        return currentHash == null || result.getTestHash() == null || currentHash.equals(result.getTestHash());
+    }
+
+    /**
+     * Returns a copy of the registered permutations, so results can be written while other permutations are still being added.
+     */
+    private Map<String, List<Permutation>> getPermutationsSnapshot() {
+        synchronized (permutations) {
+            Map<String, List<Permutation>> snapshot = new HashMap<>();
+            for (Map.Entry<String, List<Permutation>> entry : permutations.entrySet()) {
+                snapshot.put(entry.getKey(), new ArrayList<>(entry.getValue()));
+            }
+            return snapshot;
+        }
+    }
+
+    /**
+     * Stores the hash the given results were saved with on the test itself so they are not considered up to date with the current file-level hash when written.
+     */
+    protected PreviousResults keepTestHash(PreviousResults results) {
+        if (results.getTestHash() == null) {
+            for (PermutationResult result : results.getResults()) {
+                if (result.getTestHash() != null) {
+                    results.setTestHash(result.getTestHash());
+                    break;
+                }
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Returns true if the additive operations of the given permutation are different than the saved results, so results need to be written even though the permutation did not run.
+     */
+    protected boolean additiveResultsChanged(String testName, Permutation permutation) {
+        PermutationResult result = permutation.getTestResult();
+        if (result == null || !result.isSavable()) {
+            return false;
+        }
+        PermutationResult previousResult = getPreviousResult(testName, permutation);
+        return previousResult != null && !previousResult.getAdditiveResults().equals(result.getAdditiveResults());
+    }
+
+    /**
+     * Returns a copy of the given previous result marked as not verified because the permutation failed, or null if there was no previous result.
+     */
+    protected PermutationResult toFailedOnLastRun(PermutationResult previousResult) {
+        if (previousResult == null) {
+            return null;
+        }
+        PermutationResult result = new PermutationResult.Unverified("Failed on last run");
+        result.setParameters(previousResult.getParameters());
+        result.setTableParameters(previousResult.getTableParameters());
+        result.setNotes(previousResult.getNotes());
+        result.setResults(previousResult.getResults());
+        result.setAdditiveResults(previousResult.getAdditiveResults());
+        result.setTestHash(previousResult.getTestHash());
+        return result;
+    }
+
+    public String getTestGroup() {
+        return testGroup;
+    }
+
+    public TestBuilder getBuilder(String testName) {
+        return new TestBuilder(testGroup, testName, this);
+    }
+
+    /**
+     * Registers normalizers applied to operations of all permutations later added to the given test.
+     * If operationKey is null, the normalizers are applied to all operations.
+     */
+    public void addNormalizers(String testName, String operationKey, Normalizer... normalizers) {
+        if (normalizers == null) {
+            return;
+        }
+        Map<String, Set<Normalizer>> testNormalizers = this.normalizers.get(testName);
+        if (testNormalizers == null) {
+            testNormalizers = new HashMap<>();
+            this.normalizers.put(testName, testNormalizers);
+        }
+        Set<Normalizer> keyNormalizers = testNormalizers.get(operationKey);
+        if (keyNormalizers == null) {
+            keyNormalizers = new LinkedHashSet<>();
+            testNormalizers.put(operationKey, keyNormalizers);
+        }
+        keyNormalizers.addAll(Arrays.asList(normalizers));
+    }
+
+    /**
+     * Registers a previous name of a parameter in the given test and migrates already loaded results to the new name.
+     */
+    public void addParameterAlias(String testName, String previousName, String name) {
+        Map<String, String> aliases = parameterAliases.get(testName);
+        if (aliases == null) {
+            aliases = new HashMap<>();
+            parameterAliases.put(testName, aliases);
+        }
+        if (!name.equals(aliases.put(previousName, name))) {
+            migratePreviousResults(testName);
+        }
+    }
+
+    /**
+     * Registers the default value of a parameter in the given test. Already loaded results are migrated to not include the parameter if it equals the default.
+     */
+    public void addParameterDefault(String testName, String name, Object defaultValue) {
+        Map<String, String> defaults = parameterDefaults.get(testName);
+        if (defaults == null) {
+            defaults = new HashMap<>();
+            parameterDefaults.put(testName, defaults);
+        }
+        String serializedDefault = new Value(defaultValue, ValueFormat.DEFAULT).serialize();
+        if (serializedDefault != null && !serializedDefault.equals(defaults.put(name, serializedDefault))) {
+            migratePreviousResults(testName);
+        }
+    }
+
+    /**
+     * Renames aliased parameters and removes parameters equal to their default value in the loaded results of the given test, re-keying the results to match current permutations.
+     * If multiple previous results migrate to the same key, verified results are preferred.
+     */
+    protected synchronized void migratePreviousResults(String testName) {
+        PreviousResults oldResults = getPreviousResults(testName);
+        if (oldResults == null) {
+            return;
+        }
+
+        Map<String, String> aliases = parameterAliases.get(testName);
+        Map<String, String> defaults = parameterDefaults.get(testName);
+        if (defaults == null) {
+            defaults = new HashMap<>();
+        }
+
+        PreviousResults newResults = new PreviousResults(oldResults.getTestClass(), oldResults.getTestName());
+        newResults.setTestHash(oldResults.getTestHash());
+        newResults.setEnvironment(oldResults.getEnvironment());
+        for (PermutationResult result : oldResults.getResults()) {
+            Map<String, String> parameters = new HashMap<>();
+            for (Map.Entry<String, String> entry : result.getParameters().entrySet()) {
+                String name = entry.getKey();
+                if (aliases != null && aliases.containsKey(name)) {
+                    name = aliases.get(name);
+                }
+                if (!entry.getValue().equals(defaults.get(name))) {
+                    parameters.put(name, entry.getValue());
+                }
+            }
+            Set<String> tableParameters = new HashSet<>();
+            for (String name : result.getTableParameters()) {
+                tableParameters.add(aliases != null && aliases.containsKey(name) ? aliases.get(name) : name);
+            }
+
+            result.setTableParameters(tableParameters);
+            result.setParameters(parameters);
+
+            PermutationResult existing = newResults.getResult(result.getKey());
+            if (existing == null || (!existing.isVerified() && result.isVerified())) {
+                newResults.addResult(result);
+            }
+        }
+        previousResults.put(testName, newResults);
+    }
+
+    public void addPermutation(String testName, Permutation permutation) {
+        synchronized (permutations) {
+            List<Permutation> list = permutations.get(testName);
+            if (list == null) {
+                list = new ArrayList<>();
+                permutations.put(testName, list);
+            }
+
+            list.add(permutation);
+        }
+        permutation.setTestManager(this);
+
+        Map<String, String> defaults = parameterDefaults.get(testName);
+        if (defaults != null) {
+            for (Map.Entry<String, String> entry : defaults.entrySet()) {
+                permutation.setParameterDefault(entry.getKey(), entry.getValue());
+            }
+        }
+
+        Map<String, Set<Normalizer>> testNormalizers = normalizers.get(testName);
+        if (testNormalizers != null) {
+            for (Map.Entry<String, Set<Normalizer>> entry : testNormalizers.entrySet()) {
+                Normalizer[] normalizerArray = entry.getValue().toArray(new Normalizer[entry.getValue().size()]);
+                if (entry.getKey() == null) {
+                    permutation.normalizeOperations(normalizerArray);
+                } else {
+                    permutation.normalizeOperation(entry.getKey(), normalizerArray);
+                }
+            }
+        }
+
+        resultChanged(permutation);
+    }
+
+    protected File getOutputFile() {
+        String testPackageDir = testGroup.replaceFirst("\\.[^\\.]*$", "").replace(".", "/");
+        String fileName = testGroup.replaceFirst(".*\\.", "") + ".accepted.md";
+
+        return new File(new File(getOutputBase(inSameClassRoot), testPackageDir), fileName);
+    }
+
+    protected File getOutputBase(Class inSameClassRoot) {
+        File classRoot = getClassRoot(inSameClassRoot.getName());
+        if (classRoot == null) {
+            return new File(".").getAbsoluteFile();
+        }
+
+        return new File(classRoot, baseOutputDirectory);
+    }
+
+    public String getCurrentTestHash(String testName) {
+        Future<String> hash = currentTestHashes.get(testName);
+        if (hash == null) {
+            return null;
+        }
+        try {
+            return hash.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Error computing test hash for " + testName, e.getCause());
+        }
+    }
+
+    /**
+     * Returns the hash to compare with the stored hash of the given test.
+     * In {@link HashMode#METHOD} mode the method hash is used, unless the previous results were stored with only a group-level hash.
+     * In that case the group hash is returned so switching modes does not force everything to run again.
+     */
+    public String getCurrentTestHash(String testGroup, String testName) {
+        if (hashMode == HashMode.METHOD) {
+            String methodHash = getCurrentMethodHash(testName);
+            PreviousResults previous = getPreviousResults(testName);
+            if (methodHash != null && (previous == null || previous.getTestHash() != null)) {
+                return methodHash;
+            }
+        }
+        return getCurrentTestHash(testGroup);
+    }
+
+    protected String getCurrentMethodHash(String testName) {
+        synchronized (currentMethodHashes) {
+            if (!currentMethodHashes.containsKey(testName)) {
+                currentMethodHashes.put(testName, readMethodHash(testName));
+            }
+            return currentMethodHashes.get(testName);
+        }
+    }
+
+    public PermutationResult getPreviousResult(String testName, Permutation permutation) {
+        PermutationResult indexedResult = findIndexedResult(testName, permutation);
+        if (indexedResult != null) {
+            return indexedResult;
+        }
+
+        PreviousResults results = getPreviousResults(testName);
+        if (results == null) {
+            return null;
+        }
+        return results.getResult(permutation.getKey());
+    }
+
+    /**
+     * Returns the previous result of the given permutation from the sidecar index if it is verified with the same operations and test hash, without parsing the accepted file.
+     * Returns null if there is no usable index entry, so the accepted file section is parsed instead.
+     */
+    protected PermutationResult findIndexedResult(String testName, Permutation permutation) {
+        synchronized (this) {
+            if (resultsSidecar == null || loadedTests.contains(testName)) {
+                return null;
+            }
+        }
+        if (hashMode == HashMode.METHOD || isReverifyEnabled()) {
+            return null;
+        }
+
+        ResultsSidecar.Entry entry = resultsSidecar.find(testName, environment, permutation.getKey());
+        if (entry == null || !entry.isVerified()) {
+            return null;
+        }
+        String currentHash = getCurrentTestHash(testGroup);
+        if (currentHash != null && entry.getTestHash() != null && !currentHash.equals(entry.getTestHash())) {
+            return null;
+        }
+
+        PermutationResult result = new PermutationResult.Verified(permutation);
+        if (!entry.resultsMatch(result.getResults(), result.getAdditiveResults())) {
+            return null;
+        }
+        result.setTestHash(entry.getTestHash());
+        return result.setVerifiedAt(entry.getVerifiedAt()).setVerifiedBy(entry.getVerifiedBy());
+    }
+
+    /**
+     * Returns the stored results of the given test for the current environment, or null if there are none.
+     * The section of the accepted file for the test is parsed the first time it is requested.
+     */
+    protected synchronized PreviousResults getPreviousResults(String testName) {
+        loadPreviousResults(testName);
+        return previousResults.get(testName);
+    }
+
+    /**
+     * Parses the sections of the accepted file for the given test, if they have not been parsed yet.
+     */
+    protected synchronized void loadPreviousResults(String testName) {
+        if (resultsIndex == null || !loadedTests.add(testName)) {
+            return;
+        }
+
+        try {
+            addPreviousResults(resultsIndex.read(testGroup, testName, resultsReader));
+        } catch (IOException e) {
+            throw new RuntimeException("Error loading previous results for " + testName + " from " + resultsIndex.getFile().getAbsolutePath(), e);
+        }
+    }
+
+    /**
+     * Parses all sections of the accepted file that have not been parsed yet. Sections of large files are parsed in parallel.
+     */
+    protected synchronized void loadAllPreviousResults() {
+        if (resultsIndex == null) {
+            return;
+        }
+        List<String> testNames = new ArrayList<>();
+        for (String testName : resultsIndex.getTestNames()) {
+            if (!loadedTests.contains(testName)) {
+                testNames.add(testName);
+            }
+        }
+        if (testNames.isEmpty()) {
+            return;
+        }
+
+        try {
+            for (Map.Entry<String, List<PreviousResults>> entry : resultsIndex.read(testGroup, testNames, resultsReader).entrySet()) {
+                loadedTests.add(entry.getKey());
+                addPreviousResults(entry.getValue());
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Error loading previous results from " + resultsIndex.getFile().getAbsolutePath(), e);
+        }
+    }
+
+    private void addPreviousResults(List<PreviousResults> readResults) {
+        for (PreviousResults results : readResults) {
+            if (StringUtils.trimToEmpty(environment).equals(StringUtils.trimToEmpty(results.getEnvironment()))) {
+                this.previousResults.put(results.getTestName(), results);
+            } else {
+                this.otherEnvironmentResults.add(results);
+            }
+        }
+    }
+
+    /**
+     * Called when a permutation is added or its result is set. Registers the results to be written again in case they were already flushed.
+     */
+    public void resultChanged(Permutation permutation) {
+        if (resultsWriter != null) {
+            this.scheduleWriteResults();
+        }
+    }
+
+    public Permutation isDuplicateKey(String testName, Permutation permutation) {
+        List<Permutation> permutations;
+        synchronized (this.permutations) {
+            permutations = new ArrayList<>(this.permutations.get(testName));
+        }
+        for (Permutation otherPermutation : permutations) {
+            if (otherPermutation != permutation && otherPermutation.getKey().equals(permutation.getKey())) {
+                return otherPermutation;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,242 @@
+package testmd.util;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Utility methods for locating sections of Java and Groovy source files.
+ */
+public class SourceUtils {
+
+    /**
+     * Returns the source of the method declared with the given name, including its signature and body.
+     * Spock-style quoted method names (def "my test"()) are supported as well as standard identifiers.
+     * Comments are removed and whitespace outside of string literals is collapsed so formatting changes do not change the returned value.
+     * Returns null if the method cannot be found or its body cannot be parsed.
+     */
+    public static String findMethodSource(String source, String methodName) {
+        if (source == null || methodName == null) {
+            return null;
+        }
+
+        Matcher matcher = getDeclarationPattern(methodName).matcher(source);
+        while (matcher.find()) {
+            int[] declaration = findDeclaration(source, matcher);
+            if (declaration != null) {
+                return normalize(source, declaration[0], declaration[1]);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the source without the declarations of all methods with the given names, normalized the same way as {@link #findMethodSource(String, String)}.
+     * Returns null if the source cannot be parsed.
+     */
+    public static String removeMethods(String source, Collection<String> methodNames) {
+        if (source == null) {
+            return null;
+        }
+
+        List<int[]> removed = new ArrayList<>();
+        for (String methodName : methodNames) {
+            Matcher matcher = getDeclarationPattern(methodName).matcher(source);
+            while (matcher.find()) {
+                int[] declaration = findDeclaration(source, matcher);
+                if (declaration != null) {
+                    int end = appendNormalized(source, declaration[0], declaration[1], new StringBuilder());
+                    if (end < 0) {
+                        return null;
+                    }
+                    removed.add(new int[]{declaration[0], end});
+                }
+            }
+        }
+        Collections.sort(removed, new Comparator<int[]>() {
+            @Override
+            public int compare(int[] o1, int[] o2) {
+                return Integer.compare(o1[0], o2[0]);
+            }
+        });
+
+        StringBuilder remaining = new StringBuilder();
+        int index = 0;
+        for (int[] range : removed) {
+            if (range[0] >= index) {
+                remaining.append(source, index, range[0]).append('\n');
+                index = range[1];
+            }
+        }
+        remaining.append(source, index, source.length());
+        return normalize(remaining.toString(), 0, -1);
+    }
+
+    private static Pattern getDeclarationPattern(String methodName) {
+        String quoted = Pattern.quote(methodName);
+        return Pattern.compile("(?:\\b" + quoted + "\\b|\"" + quoted + "\"|'" + quoted + "')\\s*\\(");
+    }
+
+    /**
+     * Returns the start of the line declaring the method found by the given matcher and the index of the opening brace of its body.
+     * Returns null if the match is in a comment, is a method call or is not followed by a body.
+     */
+    private static int[] findDeclaration(String source, Matcher matcher) {
+        if (isCommentedOut(source, matcher.start()) || precededByDot(source, matcher.start())) {
+            return null;
+        }
+
+        int bodyStart = findBodyStart(source, matcher.end() - 1);
+        if (bodyStart < 0) {
+            return null;
+        }
+        return new int[]{source.lastIndexOf('\n', matcher.start()) + 1, bodyStart};
+    }
+
+    /**
+     * Returns the index of the opening brace of a method body, given the index of the opening parenthesis of its parameter list.
+     * Returns -1 if the parenthesis is not followed by an optional throws clause and a body.
+     */
+    private static int findBodyStart(String source, int openParen) {
+        int depth = 0;
+        int i = openParen;
+        for (; i < source.length(); i++) {
+            char c = source.charAt(i);
+            if (c == '(') {
+                depth++;
+            } else if (c == ')') {
+                depth--;
+                if (depth == 0) {
+                    break;
+                }
+            } else if (c == ';' || c == '{' || c == '}') {
+                return -1;
+            }
+        }
+
+        for (i = i + 1; i < source.length(); i++) {
+            char c = source.charAt(i);
+            if (c == '{') {
+                return i;
+            }
+            if (!(Character.isWhitespace(c) || Character.isJavaIdentifierPart(c) || c == ',' || c == '.')) {
+                return -1;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the declaration from start through the brace matching the one at bodyStart with comments removed and whitespace collapsed.
+     * If bodyStart is -1 everything from start is returned.
+     */
+    private static String normalize(String source, int start, int bodyStart) {
+        StringBuilder out = new StringBuilder();
+        if (appendNormalized(source, start, bodyStart, out) < 0) {
+            return null;
+        }
+        return out.toString().trim();
+    }
+
+    /**
+     * Appends the source from start with comments removed and whitespace collapsed, through the brace matching the one at bodyStart or through the end of the source if bodyStart is -1.
+     * Returns the index after the last character read, or -1 if the source cannot be parsed.
+     */
+    private static int appendNormalized(String source, int start, int bodyStart, StringBuilder out) {
+        int depth = 0;
+        boolean lastWasSpace = true;
+        int i = start;
+        while (i < source.length()) {
+            char c = source.charAt(i);
+            if (source.startsWith("//", i)) {
+                int end = source.indexOf('\n', i);
+                i = end < 0 ? source.length() : end;
+                continue;
+            }
+            if (source.startsWith("/*", i)) {
+                int end = source.indexOf("*/", i + 2);
+                if (end < 0) {
+                    return -1;
+                }
+                i = end + 2;
+                continue;
+            }
+            if (c == '"' || c == '\'') {
+                String delimiter = source.startsWith("\"\"\"", i) || source.startsWith("'''", i) ? source.substring(i, i + 3) : String.valueOf(c);
+                int end = findStringEnd(source, i + delimiter.length(), delimiter);
+                if (end < 0) {
+                    return -1;
+                }
+                out.append(source, i, end);
+                i = end;
+                lastWasSpace = false;
+                continue;
+            }
+
+            if (Character.isWhitespace(c)) {
+                if (!lastWasSpace) {
+                    out.append(' ');
+                    lastWasSpace = true;
+                }
+                i++;
+                continue;
+            }
+
+            out.append(c);
+            lastWasSpace = false;
+            i++;
+
+            if (bodyStart >= 0 && i > bodyStart) {
+                if (c == '{') {
+                    depth++;
+                } else if (c == '}') {
+                    depth--;
+                    if (depth == 0) {
+                        return i;
+                    }
+                }
+            }
+        }
+        return bodyStart < 0 ? source.length() : -1;
+    }
+
+    /**
+     * Returns the index just past the end of the string literal starting at the given index, or -1 if it is not terminated.
+     */
+    private static int findStringEnd(String source, int index, String delimiter) {
+        for (int i = index; i < source.length(); i++) {
+            char c = source.charAt(i);
+            if (c == '\\') {
+                i++;
+            } else if (source.startsWith(delimiter, i)) {
+                return i + delimiter.length();
+            } else if (c == '\n' && delimiter.length() == 1) {
+                return -1;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean isCommentedOut(String source, int index) {
+        int lineStart = source.lastIndexOf('\n', index) + 1;
+        if (source.substring(lineStart, index).contains("//")) {
+            return true;
+        }
+        int commentStart = source.lastIndexOf("/*", index);
+        return commentStart >= 0 && source.lastIndexOf("*/", index) < commentStart;
+    }
+
+    private static boolean precededByDot(String source, int index) {
+        for (int i = index - 1; i >= 0; i--) {
+            char c = source.charAt(i);
+            if (!Character.isWhitespace(c)) {
+                return c == '.';
+            }
+        }
+        return false;
+    }
+}
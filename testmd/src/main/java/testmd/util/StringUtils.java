@@ -164,12 +164,15 @@ public class StringUtils {
         if (string == null) {
             return null;
         }
-        String returnString = "";
+        if (times <= 0) {
+            return "";
+        }
+        StringBuilder returnString = new StringBuilder(string.length() * times);
         for (int i = 0; i < times; i++) {
-            returnString += string;
+            returnString.append(string);
         }
 
-        return returnString;
+        return returnString.toString();
     }
 
     /**
@@ -180,7 +183,18 @@ public class StringUtils {
             return null;
         }
         String pad = StringUtils.repeat(" ", padding);
-        return pad + (string.replaceAll("\n", "\n" + pad));
+        StringBuilder returnString = new StringBuilder(string.length() + pad.length() * 2);
+        returnString.append(pad);
+
+        int lineStart = 0;
+        int lineEnd;
+        while ((lineEnd = string.indexOf('\n', lineStart)) >= 0) {
+            returnString.append(string, lineStart, lineEnd + 1).append(pad);
+            lineStart = lineEnd + 1;
+        }
+        returnString.append(string, lineStart, string.length());
+
+        return returnString.toString();
     }
 
     /**
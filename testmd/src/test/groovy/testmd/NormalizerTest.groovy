@@ -0,0 +1,69 @@
+package testmd
+
+import spock.lang.Specification
+import spock.lang.Unroll
+import testmd.util.StringUtils
+
+import java.security.MessageDigest
+
+class NormalizerTest extends Specification {
+
+    @Unroll
+    def "#normalizer normalizes '#input'"() {
+        expect:
+        normalizer.normalize(input) == output
+
+        where:
+        normalizer                                          | input                          | output
+        Normalizer.WHITESPACE                               | null                           | null
+        Normalizer.WHITESPACE                               | "  select *\n\tfrom  table "   | "select * from table"
+        Normalizer.LINE_ENDINGS                             | "a\r\nb\rc\nd"                 | "a\nb\nc\nd"
+        Normalizer.replace("tmp_[0-9]+", "tmp_X")           | "create table tmp_1234 (id)"   | "create table tmp_X (id)"
+        Normalizer.replace("(\\d{4})-\\d\\d-\\d\\d", "\$1") | "on 2015-03-12 and 2014-01-01" | "on 2015 and 2014"
+    }
+
+    def "regex normalizers with the same pattern and replacement are equal"() {
+        expect:
+        Normalizer.replace("a+", "b") == Normalizer.replace("a+", "b")
+        Normalizer.replace("a+", "b") != Normalizer.replace("a+", "c")
+        [Normalizer.replace("a+", "b"), Normalizer.replace("a+", "b")].toSet().size() == 1
+    }
+
+    def "digest stores the SHA-256 digest with an optional preview"() {
+        when:
+        def sha = "{sha256:" + new String(StringUtils.encodeHex(MessageDigest.getInstance("SHA-256").digest(("a" * 1000).getBytes("UTF-8")))) + "}"
+
+        then:
+        Normalizer.digest().normalize("a" * 1000) == sha
+        Normalizer.digest(5).normalize("a" * 1000) == sha + " aaaaa..."
+        Normalizer.digest(100).normalize("create\n  table x") == Normalizer.digest().normalize("create\n  table x") + " create table x"
+        Normalizer.digest().normalize(null) == null
+        Normalizer.digest(5).normalize(Normalizer.digest().normalize("a" * 1000)) == sha
+
+        Normalizer.getDigest(sha + " aaaaa...") == sha
+        Normalizer.getDigest(sha) == sha
+        Normalizer.getDigest(sha + "x") == null
+        Normalizer.getDigest("{sha256:short}") == null
+
+        Normalizer.digest(5) == Normalizer.digest(5)
+        Normalizer.digest(5) != Normalizer.digest()
+    }
+
+    @Unroll
+    def "digest preview with length #length is '#preview'"() {
+        expect:
+        new Normalizer.DigestNormalizer(length).preview(input) == preview
+
+        where:
+        input                 | length | preview
+        "abc"                 | 3      | "abc"
+        "abcd"                | 3      | "abc..."
+        "  a \n\t b  "        | 10     | "a b"
+        "ab  cd"              | 2      | "ab..."
+        "ab  cd"              | 3      | "ab ..."
+        "ab  cd"              | 4      | "ab c..."
+        "ab   \n"             | 2      | "ab"
+        " \t\n"               | 5      | ""
+        "a" * 10000 + " tail" | 4      | "aaaa..."
+    }
+}
@@ -125,4 +125,48 @@ class PermutationResultTest extends Specification {
 
         tableResultWithNulls.key == tableResultWithoutNulls.key
     }
+
+    def "stored values keep the stored key and are copied into sorted maps when requested"() {
+        when:
+        def result = new PermutationResult.Verified().setStoredValues("abc1234", [b: "2", a: "1"], ["b"] as Set, [note: "n"], [out: "x"], [:], [VERIFIED_AT: "1000"])
+        def storedField = PermutationResult.getDeclaredField("stored")
+        storedField.setAccessible(true)
+        def stored = storedField.get(result)
+
+        then:
+        result.getKey() == "abc1234"
+        stored.parameters != null
+        stored.results != null
+
+        when:
+        def results = result.getResults()
+
+        then:
+        results == [out: "x"]
+        stored.results == null
+        stored.parameters != null
+
+        when:
+        result.setVerifiedBy("other")
+
+        then:
+        result.getMetadata() == [VERIFIED_AT: "1000", VERIFIED_BY: "other"]
+        result.getVerifiedAt() == 1000L
+        result.getParameters().toString() == "{a=1, b=2}"
+        result.getTableParameters() == ["b"] as SortedSet
+        result.getNotes() == [note: "n"]
+        result.getTableKey() == new PermutationResult.Verified().setParameters([a: "1", b: "2"]).setTableParameters(["b"] as Set).getTableKey()
+
+        when: "changing parameters computes the key again"
+        result.setParameters([a: "1", b: "3"])
+
+        then:
+        result.getKey() == new PermutationResult.Verified().setParameters([a: "1", b: "3"]).getKey()
+        result.getTableParameters() == ["b"] as SortedSet
+    }
+
+    def "stored values without a key compute it from the parameters"() {
+        expect:
+        new PermutationResult.Verified().setStoredValues(null, [a: "1"], [] as Set, [:], [:], [:], [:]).getKey() == new PermutationResult.Verified().setParameters([a: "1"]).getKey()
+    }
 }
@@ -0,0 +1,446 @@
+package testmd
+
+import spock.lang.Specification
+import spock.lang.Unroll
+import testmd.logic.CannotVerifyException
+import testmd.logic.SetupResult
+import testmd.logic.Supplier
+import testmd.storage.TestManager
+
+import static org.hamcrest.Matchers.containsInAnyOrder
+import static spock.util.matcher.HamcrestSupport.*
+
+
+class PermutationTest extends Specification {
+
+    def setupRunCount
+    def executeRunCount
+    def cleanupRunCount
+    Permutation permutation
+
+    def setup() {
+        setupRunCount = 0
+        executeRunCount = 0
+        cleanupRunCount = 0
+
+        permutation = new Permutation("Test Group", "Test Name", [a: 1, b: 2])
+                .addOperation("out", 100)
+                .setup({setupRunCount++; throw SetupResult.OK})
+                .cleanup({ cleanupRunCount++ })
+    }
+
+    def "constructor with null parameters"() {
+        expect:
+        new Permutation("Test Group", "Test Name", null).getParameters().size() == 0
+    }
+
+    def "run with no previous result"() {
+        when:
+        def result = permutation.run({ executeRunCount++ }, null)
+
+        then:
+        setupRunCount == 1
+        executeRunCount == 1
+        cleanupRunCount == 1
+        assert result.isValid()
+        assert result.isVerified()
+        assert result.isSavable()
+
+    }
+
+    def "run when previous previous run was verified"() {
+        when:
+        def previousRun = new PermutationResult.Verified(permutation)
+
+        def result = permutation.run({ executeRunCount++ }, previousRun)
+
+        then:
+        setupRunCount == 0
+        executeRunCount == 0
+        cleanupRunCount == 0
+
+        assert result.isValid()
+        assert result.isVerified()
+        assert result.isSavable()
+    }
+
+    def "run when previous previous run was not verified"() {
+        when:
+        def previousRun = new PermutationResult.Unverified("Test message", permutation)
+        def result = permutation.run({ executeRunCount++ }, previousRun)
+
+        then:
+        setupRunCount == 1
+        executeRunCount == 1
+        cleanupRunCount == 1
+
+        assert result.isValid()
+        assert result.isVerified()
+        assert result.isSavable()
+    }
+
+    @Unroll
+    def "run when previous previous run was verified but different output"() {
+        when:
+        def previousRun = new PermutationResult.Verified()
+        previousRun.setParameters(["a": "1", "b": "2"])
+        previousRun.setResults(output)
+        def result = permutation.run({ executeRunCount++ }, previousRun)
+
+        then:
+        setupRunCount == 1
+        executeRunCount == 1
+        cleanupRunCount == 1
+
+        assert result.isValid()
+        assert result.isVerified()
+        assert result.isSavable()
+
+        where:
+        output << [ ["out": "555"], ["not-out": "12"], ["out": "100", "not-out": "12"],  new HashMap<String, String>(), null ]
+
+    }
+
+    @Unroll
+    def "additive operations do not cause a verified permutation to run again: #previousAdditive"() {
+        when:
+        permutation.addAdditiveOperation("diagnostic", "new value")
+        def previousRun = new PermutationResult.Verified()
+        previousRun.setParameters(["a": "1", "b": "2"])
+        previousRun.setResults(["out": "100"])
+        previousRun.setAdditiveResults(previousAdditive)
+        def result = permutation.run({ executeRunCount++ }, previousRun)
+
+        then:
+        setupRunCount == 0
+        executeRunCount == 0
+        result.isVerified()
+        result.getResults() == ["out": "100"]
+        result.getAdditiveResults() == ["diagnostic": "new value"]
+
+        where:
+        previousAdditive << [null, ["diagnostic": "old value"], ["removed": "x"]]
+    }
+
+    def "operations are normalized before comparing and saving"() {
+        when:
+        permutation.addOperation("out", "create table tmp_9876  (id)")
+                .normalizeOperations(Normalizer.WHITESPACE)
+                .normalizeOperation("out", Normalizer.replace("tmp_[0-9]+", "tmp_X"))
+        def previousRun = new PermutationResult.Verified()
+        previousRun.setParameters(["a": "1", "b": "2"])
+        previousRun.setResults(["out": "create table tmp_X (id)"])
+        def result = permutation.run({ executeRunCount++ }, previousRun)
+
+        then:
+        setupRunCount == 0
+        executeRunCount == 0
+        result.getResults() == ["out": "create table tmp_X (id)"]
+    }
+
+    def "digested operations are compared by digest"() {
+        when:
+        def script = "create table x (id int);\n" * 1000
+        permutation.addOperation("out", script)
+                .normalizeOperation("out", Normalizer.digest(20), Normalizer.LINE_ENDINGS)
+        def previousRun = new PermutationResult.Verified()
+        previousRun.setParameters(["a": "1", "b": "2"])
+        previousRun.setResults(["out": previousValue])
+        def result = permutation.run({ executeRunCount++ }, previousRun)
+
+        then:
+        executeRunCount == (matches ? 0 : 1)
+        result.getResults()["out"] == Normalizer.digest().normalize(script) + " create table x (id i..."
+
+        where:
+        previousValue                                                            | matches
+        Normalizer.digest().normalize("create table x (id int);\n" * 1000)      | true
+        Normalizer.digest(3).normalize("create table x (id int);\n" * 1000)     | true
+        "create table x (id int);\n" * 1000                                     | true
+        Normalizer.digest().normalize("create table y (id int);\n" * 1000)      | false
+        "create table y"                                                         | false
+    }
+
+    def "supplied operations are computed once and notes only when saved"() {
+        when:
+        def computed = []
+        permutation.addOperation("lazy", { computed.add("operation"); return "generated" } as Supplier)
+                .addNote("note", { computed.add("note"); return "documentation" } as Supplier)
+        def previousRun = new PermutationResult.Verified()
+        previousRun.setParameters(["a": "1", "b": "2"])
+        previousRun.setResults(["out": "100", "lazy": "generated"])
+        def result = permutation.run({ executeRunCount++ }, previousRun)
+
+        then:
+        executeRunCount == 0
+        computed == ["operation"]
+        result.getResults() == ["out": "100", "lazy": "generated"]
+        computed == ["operation"]
+        !permutation.getNotes()["note"].isComputed()
+
+        result.getNotes() == ["note": "documentation"]
+        result.getNotes() == ["note": "documentation"]
+        computed == ["operation", "note"]
+    }
+
+    def "supplied operations are computed the first time they are used"() {
+        when:
+        def computed = false
+        def lazyPermutation = new Permutation("Test Group", "Test Name", [a: 1]).addOperation("lazy", { computed = true; return "x" } as Supplier)
+
+        then:
+        !lazyPermutation.getOperations()["lazy"].isComputed()
+        !computed
+        lazyPermutation.getOperations()["lazy"].serialize() == "x"
+        computed
+    }
+
+    def "normalizers registered on the test are applied to new permutations"() {
+        when:
+        def testManager = new TestManager("Test Group", PermutationTest, null, null)
+        testManager.getBuilder("Test Name").normalizeOperations(Normalizer.WHITESPACE).normalizeOperation("out", Normalizer.replace("[0-9]+", "N"))
+        def newPermutation = testManager.getBuilder("Test Name").withPermutation([a: 1]).addOperation("out", " value  123 ").addNote("note", " 123 ")
+
+        then:
+        new PermutationResult.Verified(newPermutation).getResults() == ["out": "value N"]
+        new PermutationResult.Verified(newPermutation).getNotes() == ["note": " 123 "]
+    }
+
+    @Unroll
+    def "strict formats rejects unordered #type"() {
+        when:
+        def testManager = new TestManager("Test Group", PermutationTest, null, null)
+        testManager.setStrictFormats(true)
+        testManager.addPermutation("Test Name", permutation)
+        permutation.addParameter("c", parameter).addOperation("out", operation)
+        permutation.run({ executeRunCount++ })
+
+        then:
+        def e = thrown(RuntimeException)
+        e.message.startsWith("${type} '${key}' contains an unordered Set or Map")
+        setupRunCount == 0
+
+        where:
+        type        | key   | parameter                | operation
+        "Parameter" | "c"   | new HashSet(["x", "y"])  | "100"
+        "Operation" | "out" | new TreeSet(["x", "y"])  | [new HashMap([a: 1])]
+    }
+
+    def "run when setup throws exception"() {
+        when:
+        permutation.setup({throw new RuntimeException("Testing exception")})
+        permutation.run({ executeRunCount++ }, null)
+
+        then:
+        def e = thrown(RuntimeException)
+        assert e.message.startsWith("Error executing setup")
+        assert e.cause.message == "Testing exception"
+    }
+
+
+    def "run when verification throws exception"() {
+        when:
+        permutation.run({ throw new RuntimeException("verification problem") }, null)
+
+        then:
+        def e = thrown(RuntimeException)
+        assert e.message.startsWith("Error executing verification")
+        assert e.cause.message == "verification problem"
+    }
+
+    def "run when setup returns CannotVerify"() {
+        when:
+        permutation.setup({setupRunCount++; throw new SetupResult.CannotVerify("cannot verify message")})
+        def result = permutation.run({ executeRunCount++ }, null)
+
+        then:
+        setupRunCount == 1
+        executeRunCount == 0
+        cleanupRunCount == 0
+        assert !result.isVerified()
+        assert result.isValid()
+        result.getNotVerifiedMessage() == "cannot verify message"
+        assert result.isSavable()
+    }
+
+    def "run when setup returns Invalid"() {
+        when:
+        permutation.setup({setupRunCount++; throw new SetupResult.Skip("invalid message")})
+        def result = permutation.run({ executeRunCount++ }, null)
+
+        then:
+        setupRunCount == 1
+        executeRunCount == 0
+        cleanupRunCount == 0
+        assert !result.isVerified()
+        assert !result.isValid()
+        result.getNotVerifiedMessage() == "invalid message"
+        assert result.isSavable()
+    }
+
+    def "run when setup returns null"() {
+        when:
+        permutation.setup({setupRunCount++;})
+        permutation.run({ executeRunCount++ }, null)
+
+        then:
+        def e = thrown(RuntimeException)
+        assert e.message.startsWith("Error executing setup")
+        assert e.cause.message == "No result returned (thrown) by setup"
+
+        setupRunCount == 1
+        executeRunCount == 0
+    }
+
+    def "run when cleanup throws an error"() {
+        when:
+        permutation.cleanup({throw new RuntimeException("cleanup error")})
+        permutation.run({ executeRunCount++ }, null)
+
+        then:
+        def e = thrown(RuntimeException)
+        assert e.message.startsWith("Error executing cleanup")
+        assert e.cause.message == "cleanup error"
+
+        setupRunCount == 1
+        executeRunCount == 1
+    }
+
+    def "run with null verification logic"() {
+        when:
+        permutation.run(null, null)
+
+        then:
+        def e = thrown(RuntimeException)
+        assert e.message.startsWith("No verification logic set")
+
+        setupRunCount == 0
+        executeRunCount == 0
+    }
+
+    def "run when verification logic throws CannotVerifyException"() {
+        when:
+        def result = permutation.run({ executeRunCount++; throw new CannotVerifyException("testing not verify") }, null)
+
+        then:
+        setupRunCount == 1
+        executeRunCount == 1
+        cleanupRunCount == 1
+        assert !result.isVerified()
+        assert result.isValid()
+        result.getNotVerifiedMessage() == "testing not verify"
+        assert result.isSavable()
+    }
+
+    @Unroll
+    def "cached #description result is reused without running setup"() {
+        when:
+        def testManager = new TestManager("Test Group", PermutationTest, null, null)
+        testManager.setNegativeResultCache(true)
+        permutation.setTestManager(testManager)
+        def previousRun = previousResult.setParameters(["a": "1", "b": "2"]).setResults(["out": "100"]).setCachedAt(12345L)
+        def result = permutation.run({ executeRunCount++ }, previousRun)
+
+        then:
+        setupRunCount == 0
+        executeRunCount == 0
+        result.getClass() == previousResult.getClass()
+        result.getNotVerifiedMessage() == "cached message"
+        result.getCachedAt() == 12345L
+
+        where:
+        description  | previousResult
+        "skipped"    | new PermutationResult.Invalid("cached message")
+        "unverified" | new PermutationResult.Unverified("cached message")
+    }
+
+    @Unroll
+    def "cached result is not reused when #description"() {
+        when:
+        def testManager = new TestManager("Test Group", PermutationTest, null, null)
+        testManager.setNegativeResultCache(enabled)
+        testManager.setNegativeResultTtl(ttl)
+        permutation.setTestManager(testManager)
+        permutation.setup({ setupRunCount++; throw new SetupResult.Skip("skip message") })
+        def previousRun = new PermutationResult.Invalid("cached message").setParameters(["a": "1", "b": "2"]).setResults(["out": output]).setCachedAt(System.currentTimeMillis() - 10 * 60 * 1000)
+        def result = permutation.run({ executeRunCount++ }, previousRun)
+
+        then:
+        setupRunCount == 1
+        executeRunCount == 0
+        !result.isValid()
+        result.getNotVerifiedMessage() == "skip message"
+        (result.getCachedAt() != null) == enabled
+
+        where:
+        description            | enabled | ttl  | output
+        "caching is disabled"  | false   | null | "100"
+        "operations changed"   | true    | null | "200"
+        "TTL expired"          | true    | 5L   | "100"
+    }
+
+    def "results are not cached when negative result cache is disabled"() {
+        when:
+        permutation.setTestManager(new TestManager("Test Group", PermutationTest, null, null))
+        permutation.setup({ setupRunCount++; throw new SetupResult.CannotVerify("cannot verify") })
+        def result = permutation.run({ executeRunCount++ }, null)
+
+        then:
+        setupRunCount == 1
+        result.getCachedAt() == null
+    }
+
+    def "permutation keys ending with _asTable are formatted as tables"() {
+        when:
+        def myPermutation = new Permutation("TestGroup", "Test Name", [aKey: "a", bKey_asTable: "b", cKey: "c", "dKey_asTable": "d"])
+
+        then:
+        myPermutation.parameters["aKey"].toString() == "a"
+        myPermutation.parameters["bKey"].toString() == "b"
+        myPermutation.parameters["cKey"].toString() == "c"
+        myPermutation.parameters["dKey"].toString() == "d"
+
+        expect myPermutation.tableParameters, containsInAnyOrder(["bKey", "dKey"] as Object[])
+    }
+
+    def "testName that starts with ! always runs"() {
+        when:
+        permutation.testName = "!Test Name"
+        def previousRun = new PermutationResult.Verified(permutation)
+
+        def result = permutation.run({ executeRunCount++ }, previousRun)
+
+        then:
+        setupRunCount == 1
+        executeRunCount == 1
+        cleanupRunCount == 1
+
+        assert result.isValid()
+        assert result.isVerified()
+        assert result.isSavable()
+    }
+
+    def "addParameter doesn't actually add null values"() {
+        when:
+        def permutation = new Permutation("TestGroup", "test name", [:])
+        permutation.addParameter("a", "value")
+        permutation.addParameter("b", null)
+        permutation.addParameter("c", "value2")
+
+        then:
+        permutation.getParameters().keySet() == ["a", "c"] as Set
+    }
+
+    def "parameters equal to their default are not part of the key"() {
+        when:
+        def withDefault = new Permutation("TestGroup", "test name", [a: 1, b: "default"]).setParameterDefault("b", "default").setParameterDefault("c", 3)
+        withDefault.addParameter("c", 3)
+        def withoutParameter = new Permutation("TestGroup", "test name", [a: 1])
+        def withOtherValue = new Permutation("TestGroup", "test name", [a: 1]).setParameterDefault("c", 3).addParameter("c", 4)
+
+        then:
+        withDefault.getParameters().keySet() == ["a"] as Set
+        withDefault.getKey() == withoutParameter.getKey()
+        withOtherValue.getKey() != withoutParameter.getKey()
+    }
+}
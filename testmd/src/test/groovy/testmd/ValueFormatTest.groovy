@@ -0,0 +1,121 @@
+package testmd
+
+import spock.lang.Specification
+import spock.lang.Unroll
+
+class ValueFormatTest extends Specification {
+
+    static otherFormat = new ValueFormat() {
+        @Override
+        String format(Object value) {
+            return "NOT " + value;
+        }
+    }
+
+    @Unroll
+    def "OutputFormat.DEFAULT format"() {
+        expect:
+        ValueFormat.DEFAULT.format(input) == output
+
+        where:
+        input                                                      | output
+        null                                                       | null
+        "1"                                                        | "1"
+        "longer string"                                            | "longer string"
+        3L                                                         | "3"
+        3I                                                         | "3"
+        5.6F                                                       | "5.6"
+        Integer                                                    | "java.lang.Integer"
+        [] as Object[]                                             | ""
+        ["a string", 3L, 5.6F, Collection.class, null] as Object[] | "a string, 3, 5.6, java.util.Collection, null"
+        [] as List                                                 | ""
+        ["a string", 3L, 5.6F, Collection.class, null] as List     | "a string, 3, 5.6, java.util.Collection, null"
+        new Value(5, otherFormat)                                  | "NOT 5"
+    }
+
+    @Unroll
+    def "CollectionFormat format"() {
+        expect:
+        new ValueFormat.CollectionFormat(itemFormat).format(input) == output
+
+        where:
+        input                                                  | itemFormat           | output
+        null                                                   | ValueFormat.DEFAULT | null
+        [] as List                                             | ValueFormat.DEFAULT | ""
+        ["a string", 3L, 5.6F, Collection.class, null] as List | ValueFormat.DEFAULT | "a string, 3, 5.6, java.util.Collection, null"
+        ["21", "65"]                                           | otherFormat          | "NOT 21, NOT 65"
+    }
+
+    @Unroll
+    def "ArrayFormat format"() {
+        expect:
+        new ValueFormat.ArrayFormat(itemFormat).format(input) == output
+
+        where:
+        input                                                      | itemFormat           | output
+        null                                                       | ValueFormat.DEFAULT | null
+        [] as Object[]                                             | ValueFormat.DEFAULT | ""
+        ["a string", 3L, 5.6F, Collection.class, null] as Object[] | ValueFormat.DEFAULT | "a string, 3, 5.6, java.util.Collection, null"
+        ["21", "65"] as Object[]                                   | otherFormat          | "NOT 21, NOT 65"
+
+    }
+
+    @Unroll
+    def "OutputFormat.DEFAULT sorts unordered sets and maps: #output"() {
+        expect:
+        ValueFormat.DEFAULT.format(input) == output
+
+        where:
+        input                                                         | output
+        new HashSet(["zebra", "apple", "mango", "kiwi"])              | "apple, kiwi, mango, zebra"
+        new HashSet([10, 9, 100, 2])                                  | "2, 9, 10, 100"
+        new HashSet([3, "b", null, "a", 1])                           | "1, 3, a, b, null"
+        new LinkedHashSet(["zebra", "apple"])                         | "zebra, apple"
+        new HashMap([zebra: 1, apple: [b: 2, a: 1], mango: Integer])  | "{apple={b=2, a=1}, mango=java.lang.Integer, zebra=1}"
+        new HashMap([zebra: new HashSet(["y", "x"]), apple: null])    | "{apple=null, zebra=[x, y]}"
+        new HashMap([a: [1, "b=2"]])                                  | "{a=[1, b=2]}"
+        new HashMap([a: 1, b: 2])                                     | "{a=1, b=2}"
+        new HashMap([a: ["x", "y"] as String[]])                      | "{a=[x, y]}"
+        new LinkedHashMap([zebra: 1, apple: 2])                       | "{zebra=1, apple=2}"
+        new LinkedHashMap([zebra: [1, 2], apple: Integer])            | "{zebra=[1, 2], apple=class java.lang.Integer}"
+        new LinkedHashMap([zebra: new HashSet(["y", "x"]), apple: 1]) | "{zebra=[x, y], apple=1}"
+        new TreeMap([zebra: 1, apple: 2])                             | "{apple=2, zebra=1}"
+        [:]                                                           | "{}"
+    }
+
+    def "OutputFormat.DEFAULT sorts mixed types the same regardless of iteration order"() {
+        when:
+        def values = (1..40).collect { it } + (1..40).collect { String.valueOf(it * 7) }
+        def outputs = (1..300).collect { capacity ->
+            def set = new HashSet(capacity)
+            set.addAll(capacity % 2 == 0 ? values : values.reverse())
+            return ValueFormat.DEFAULT.format(set)
+        } as Set
+
+        then:
+        outputs.size() == 1
+        outputs.iterator().next().startsWith("1, 2, 3, ")
+        outputs.iterator().next().contains(", 39, 40, 105, 112, ")
+        outputs.iterator().next().endsWith(", 91, 98")
+    }
+
+    @Unroll
+    def "containsUnordered: #input"() {
+        expect:
+        ValueFormat.containsUnordered(input) == expected
+
+        where:
+        input                                          | expected
+        null                                           | false
+        "a"                                            | false
+        ["a", "b"]                                     | false
+        [a: 1]                                         | false
+        new TreeSet(["a"])                             | false
+        new HashSet(["a"])                             | true
+        new HashMap([a: 1])                            | true
+        [["a"], new HashSet(["b"])]                    | true
+        [a: new HashMap([b: 1])]                       | true
+        [new HashSet(["a"])] as Object[]               | true
+        new Value(new HashSet(["a"]), null)            | true
+    }
+}
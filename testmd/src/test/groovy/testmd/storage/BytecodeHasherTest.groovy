@@ -0,0 +1,107 @@
+package testmd.storage
+
+import com.example.ExampleJUnitTest
+import org.codehaus.groovy.control.CompilationUnit
+import org.codehaus.groovy.control.Phases
+import spock.lang.Requires
+import spock.lang.Specification
+
+import javax.tools.ToolProvider
+import java.nio.file.Files
+
+class BytecodeHasherTest extends Specification {
+
+    def "computeHash includes in-project dependencies"() {
+        when:
+        def hasher = new BytecodeHasher(this.class.classLoader)
+        def hash = hasher.computeHash(ExampleJUnitTest.name)
+
+        then:
+        hash ==~ /[0-9a-f]{6}/
+        hasher.getClassHash("com/example/ExampleJUnitTest").dependencies.contains("com/example/ExampleLogic")
+        hasher.getClassHash("com/example/ExampleLogic") != null
+        hasher.getClassHash("java/lang/String") == null
+    }
+
+    def "computeHash returns null for classes outside the project"() {
+        expect:
+        new BytecodeHasher(this.class.classLoader).computeHash(String.name) == null
+    }
+
+    @Requires({ ToolProvider.getSystemJavaCompiler() != null })
+    def "hashClass ignores debug information but not logic changes"() {
+        when:
+        def original = compile("""
+public class Example {
+    public int add(int first, int second) {
+        int total = first + second;
+        return total;
+    }
+}""")
+        def reformatted = compile("""
+public class Example {
+
+    // a comment
+    public int add(int a, int b) {
+
+        int sum = a + b;
+
+        return sum;
+    }
+}""")
+        def changed = compile("""
+public class Example {
+    public int add(int first, int second) {
+        int total = first - second;
+        return total;
+    }
+}""")
+
+        then:
+        BytecodeHasher.hashClass(original).digest == BytecodeHasher.hashClass(reformatted).digest
+        BytecodeHasher.hashClass(original).digest != BytecodeHasher.hashClass(changed).digest
+    }
+
+    def "hashClass ignores the compile time Groovy stores in Spock classes"() {
+        when:
+        def source = """
+class ExampleSpec extends spock.lang.Specification {
+    def "adds numbers"() {
+        expect:
+        a + b == c
+
+        where:
+        a | b | c
+        1 | 2 | 3
+    }
+}"""
+        def compiled = (1..10).collect {
+            Thread.sleep(5)
+            return compileGroovy(source)
+        }
+        def changed = compileGroovy(source.replace("a + b", "a - b"))
+
+        then:
+        compiled.collect { it as List }.unique().size() == 10
+        compiled.collect { BytecodeHasher.hashClass(it).digest }.unique().size() == 1
+        BytecodeHasher.hashClass(compiled[0]).digest != BytecodeHasher.hashClass(changed).digest
+    }
+
+    byte[] compileGroovy(String source) {
+        def unit = new CompilationUnit(new GroovyClassLoader(this.class.classLoader))
+        unit.addSource("ExampleSpec.groovy", source)
+        unit.compile(Phases.CLASS_GENERATION)
+        return unit.getClasses().find { it.name == "ExampleSpec" }.bytes
+    }
+
+    byte[] compile(String source) {
+        def dir = Files.createTempDirectory("testmd-bytecode").toFile()
+        def sourceFile = new File(dir, "Example.java")
+        sourceFile.text = source
+        assert ToolProvider.getSystemJavaCompiler().run(null, null, null, "-g", "-d", dir.absolutePath, sourceFile.absolutePath) == 0
+
+        def bytes = new File(dir, "Example.class").bytes
+        dir.deleteDir()
+        return bytes
+    }
+}
@@ -0,0 +1,94 @@
+package testmd.storage
+
+import spock.lang.Specification
+import spock.lang.Unroll
+
+import java.nio.file.Files
+
+class ChangeSelectorTest extends Specification {
+
+    def "readChangedFiles reads a list of paths"() {
+        expect:
+        ChangeSelector.readChangedFiles(new StringReader("src/main/java/a/A.java\n\n  pom.xml  \n")) == ["src/main/java/a/A.java", "pom.xml"]
+    }
+
+    def "readChangedFiles reads old and new paths from a unified diff"() {
+        when:
+        def diff = """diff --git a/src/main/java/a/A.java b/src/main/java/a/A.java
+index 1234567..89abcde 100644
+--- a/src/main/java/a/A.java
++++ b/src/main/java/a/A.java
+@@ -1,3 +1,3 @@
+--- not a header
++++ not a header either
+diff --git a/src/test/java/a/New.java b/src/test/java/a/New.java
+new file mode 100644
+--- /dev/null
++++ b/src/test/java/a/New.java
+diff --git a/old/Name.java b/new/Name.java
+similarity index 100%
+rename from old/Name.java
+rename to new/Name.java
+diff --git a/image.png b/image.png
+Binary files a/image.png and b/image.png differ
+"""
+
+        then:
+        ChangeSelector.readChangedFiles(new StringReader(diff)) as Set == [
+                "src/main/java/a/A.java", "not a header", "not a header either", "src/test/java/a/New.java", "old/Name.java", "new/Name.java", "image.png"
+        ] as Set
+    }
+
+    @Unroll
+    def "getClassName: #path"() {
+        expect:
+        ChangeSelector.getClassName(path) == expected
+
+        where:
+        path                                             | expected
+        "src/main/java/com/example/Logic.java"          | "com/example/Logic"
+        "module/src/test/groovy/com/example/Spec.groovy" | "com/example/Spec"
+        "mysrc/main/java/com/example/Logic.java"        | null
+        "src/test/resources/com/example/data.txt"       | null
+        "pom.xml"                                       | null
+    }
+
+    def "paths are normalized"() {
+        expect:
+        new ChangeSelector(["./src/A.java", "/src/B.java", "src\\C.java", " "]).getChangedFiles() as List == ["src/A.java", "src/B.java", "src/C.java"]
+    }
+
+    def "isAffected checks the group files, other test groups and dependencies"() {
+        when:
+        def root = Files.createTempDirectory("testmd-changes").toFile()
+        def resultsBase = new File(root, "src/test/resources")
+        def acceptedFile = new File(resultsBase, "com/example/MyTest.accepted.md")
+        def otherAcceptedFile = new File(resultsBase, "com/example/OtherTest.accepted.md")
+        otherAcceptedFile.parentFile.mkdirs()
+        otherAcceptedFile.text = ""
+        def sources = [new File(root, "src/test/java/com/example/MyTest.java"), new File(root, "src/test/java/com/example/BaseTest.java")]
+        def affected = { List<String> changed, Set<String> dependencies -> new ChangeSelector(changed).isAffected(acceptedFile, resultsBase, sources, dependencies) }
+
+        then:
+        !affected([], null)
+        affected(["src/test/java/com/example/MyTest.java"], null)
+        affected(["src/test/java/com/example/BaseTest.java"], null)
+        affected(["src/test/resources/com/example/MyTest.accepted.md"], null)
+        !affected(["src/test/resources/com/example/OtherTest.accepted.md"], null)
+        !affected(["src/test/java/com/example/OtherTest.java"], null)
+
+        and: "other changes affect every group unless dependencies are known"
+        affected(["src/test/java/com/example/Helper.java"], null)
+        affected(["src/main/java/com/example/Logic.java"], null)
+        affected(["pom.xml"], null)
+        affected(["src/main/java/com/example/Logic.java"], ["com/example/MyTest", "com/example/Logic\$Inner"] as Set)
+        !affected(["src/main/java/com/example/Logic.java"], ["com/example/MyTest", "com/example/LogicUtil"] as Set)
+        affected(["pom.xml"], ["com/example/MyTest"] as Set)
+
+        and: "groups without known sources are always affected by changes"
+        new ChangeSelector(["README.txt"]).isAffected(acceptedFile, resultsBase, [], null)
+
+        cleanup:
+        root?.deleteDir()
+    }
+}
@@ -0,0 +1,58 @@
+package testmd.storage
+
+import spock.lang.Specification
+
+import java.nio.file.Files
+
+class HashCacheTest extends Specification {
+
+    File dir
+
+    def setup() {
+        dir = Files.createTempDirectory("testmd-hashcache").toFile()
+    }
+
+    def cleanup() {
+        dir.deleteDir()
+    }
+
+    def "values are returned until the file changes"() {
+        when:
+        def file = new File(dir, "Source.java")
+        file.text = "class Source {}"
+        def cache = new HashCache(null)
+        cache.put(file, "source", "abc123")
+
+        then:
+        cache.get(file, "source") == "abc123"
+        cache.get(file, "method:other") == null
+
+        when:
+        file.text = "class Source { int changed; }"
+
+        then:
+        cache.get(file, "source") == null
+    }
+
+    def "values are persisted between instances"() {
+        when:
+        def file = new File(dir, "Source.java")
+        file.text = "class Source {}"
+        def removed = new File(dir, "Removed.java")
+        removed.text = "class Removed {}"
+
+        def storeFile = new File(dir, "cache/hashes.properties")
+        def cache = new HashCache(storeFile)
+        cache.put(file, "method:my|test", "abc123")
+        cache.put(removed, "source", "def456")
+        removed.delete()
+        cache.save()
+
+        def reloaded = new HashCache(storeFile)
+
+        then:
+        storeFile.exists()
+        reloaded.get(file, "method:my|test") == "abc123"
+        !storeFile.text.contains("Removed.java")
+    }
+}
@@ -0,0 +1,49 @@
+package testmd.storage
+
+import spock.lang.Specification
+
+import java.util.concurrent.atomic.AtomicInteger
+
+class ResultsFlusherTest extends Specification {
+
+    def "flush writes each registered manager once"() {
+        when:
+        def writes = new AtomicInteger()
+        def flusher = new ResultsFlusher()
+        def managers = (1..10).collect { createManager("group $it", writes) }
+        managers.each { flusher.register(it) }
+        managers.each { flusher.register(it) }
+
+        then:
+        flusher.flush()
+        writes.get() == 10
+
+        and: "already flushed managers are not written again"
+        flusher.flush()
+        writes.get() == 10
+    }
+
+    def "flush returns false when writes exceed the timeout"() {
+        when:
+        def flusher = new ResultsFlusher()
+        flusher.setTimeoutSeconds(0)
+        flusher.register(new TestManager("slow group", ResultsFlusherTest, new ResultsReader(), new ResultsWriter()) {
+            @Override
+            protected void writeResults() {
+                Thread.sleep(2000)
+            }
+        })
+
+        then:
+        !flusher.flush()
+    }
+
+    def createManager(String group, AtomicInteger writes) {
+        return new TestManager(group, ResultsFlusherTest, new ResultsReader(), new ResultsWriter()) {
+            @Override
+            protected void writeResults() {
+                writes.incrementAndGet()
+            }
+        }
+    }
+}
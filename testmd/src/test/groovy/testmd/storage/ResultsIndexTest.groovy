@@ -0,0 +1,123 @@
+package testmd.storage
+
+import spock.lang.Specification
+import spock.lang.Unroll
+import testmd.PermutationResult
+
+import java.nio.file.Files
+
+class ResultsIndexTest extends Specification {
+
+    File file
+
+    def setup() {
+        file = Files.createTempFile("testmd-index", ".accepted.md").toFile()
+    }
+
+    def cleanup() {
+        file.delete()
+    }
+
+    def assertSameResults(List expected, List actual) {
+        assert actual*.testName == expected*.testName
+        assert actual*.environment == expected*.environment
+        assert actual*.testHash == expected*.testHash
+        for (int i = 0; i < expected.size(); i++) {
+            assert actual[i].results*.key == expected[i].results*.key
+            assert actual[i].results*.testHash == expected[i].results*.testHash
+            assert actual[i].results*.results == expected[i].results*.results
+            assert actual[i].results*.notes == expected[i].results*.notes
+        }
+        return true
+    }
+
+    @Unroll("#featureName: #resultsFile")
+    def "reading each test from the index matches reading the whole file"() {
+        when:
+        file.bytes = this.class.classLoader.getResourceAsStream("testmd/example_output/" + resultsFile).bytes
+        def index = ResultsIndex.build(file)
+        def fullRead = new ResultsReader().read("com.example.Test", new InputStreamReader(new FileInputStream(file), "UTF-8"))
+
+        then:
+        index.getTestNames() as List == fullRead*.testName.unique()
+        for (def testName : index.getTestNames()) {
+            assertSameResults(fullRead.findAll { it.testName == testName }, index.read("com.example.Test", testName, new ResultsReader()))
+        }
+        index.read("com.example.Test", "not a test", new ResultsReader()) == []
+
+        where:
+        resultsFile << ["empty.md", "complex.md", "complex_tables.md", "multiple_tests.md", "multiple_tests_tables.md"]
+    }
+
+    def "index keeps its own copy of the file so the file can be rewritten"() {
+        when:
+        file.bytes = this.class.classLoader.getResourceAsStream("testmd/example_output/multiple_tests.md").bytes
+        def index = ResultsIndex.build(file)
+        def expected = index.getTestNames().collectEntries { [(it): index.read("com.example.Test", it, new ResultsReader())] }
+        file.text = ""
+
+        then:
+        file.delete()
+        index.getTestNames().every { assertSameResults(expected[it], index.read("com.example.Test", it, new ResultsReader())) }
+    }
+
+    def "sections for all environments and the file test hash are indexed"() {
+        when:
+        def permutation = new PermutationResult.Verified().setParameters([a: "1"]).setResults([out: "x\n  # Test: \"indented\" #"])
+        def out = new StringWriter()
+        def writer = new ResultsWriter()
+        writer.writeWarning(out)
+        writer.writeTest("com.example.Test", "my test", null, null, [permutation], out)
+        writer.writeTest("com.example.Test", "other test", null, null, [permutation], out)
+        writer.writeTest("com.example.Test", "t\u00e9st \u2713", null, null, [permutation], out)
+        writer.writeTest("com.example.Test", "my test", "abc123", "db=a", [permutation], out)
+        out.append("# Test Version: \"def456\" #\n")
+        file.setText(out.toString().replace("\n", lineEnding), "UTF-8")
+
+        def index = ResultsIndex.build(file)
+        def results = index.read("com.example.Test", "my test", new ResultsReader())
+
+        then:
+        index.getTestNames() as List == ["my test", "other test", "t\u00e9st \u2713"]
+        index.read("com.example.Test", "t\u00e9st \u2713", new ResultsReader())*.testName == ["t\u00e9st \u2713"]
+        index.getTestHash() == "def456"
+        results*.environment == [null, "db=a"]
+        results*.results*.testHash == [["def456"], ["abc123"]]
+        results[0].results[0].results == [out: "x\n  # Test: \"indented\" #"]
+
+        where:
+        lineEnding << ["\n", "\r\n"]
+    }
+
+    @Unroll
+    def "tests read together are parsed in file order: #testCount tests"() {
+        when:
+        def out = new StringWriter()
+        def writer = new ResultsWriter()
+        writer.writeWarning(out)
+        for (int test = 0; test < testCount; test++) {
+            def permutations = (0..<20).collect { new PermutationResult.Verified().setParameters([a: "test " + test, b: String.valueOf(it)]).setResults([out: "x" * 100]) }
+            writer.writeTest("com.example.Test", "test " + test, null, null, permutations, out)
+            writer.writeTest("com.example.Test", "test " + test, null, "db=a", permutations, out)
+        }
+        out.append("# Test Version: \"def456\" #\n")
+        file.setText(out.toString(), "UTF-8")
+
+        def index = ResultsIndex.build(file)
+        def fullRead = new ResultsReader().read("com.example.Test", new InputStreamReader(new FileInputStream(file), "UTF-8"))
+        def testNames = index.getTestNames().toList()
+        def all = index.read("com.example.Test", testNames.reverse(), new ResultsReader())
+        def some = index.read("com.example.Test", [testNames[1], "not a test", testNames[0]], new ResultsReader())
+
+        then:
+        (file.length() >= ResultsIndex.PARALLEL_THRESHOLD) == parallel
+        all.keySet() as List == testNames
+        assertSameResults(fullRead, all.values().flatten())
+        some.keySet() as List == [testNames[0], testNames[1]]
+
+        where:
+        testCount | parallel
+        3         | false
+        300       | true
+    }
+}
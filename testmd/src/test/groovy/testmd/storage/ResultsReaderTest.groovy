@@ -0,0 +1,260 @@
+package testmd.storage
+
+import spock.lang.Specification
+import spock.lang.Unroll
+import testmd.PermutationResult
+import testmd.PreviousResults
+import testmd.util.StringUtils
+
+import static org.junit.Assert.fail
+
+class ResultsReaderTest extends Specification {
+
+    def "read empty test"() {
+        when:
+        def reader = new InputStreamReader(openStream("empty.md"))
+        def results = new ResultsReader().read("com.example.Test", reader)
+
+        then:
+        assert results.size() == 1
+        assert results[0].getTestName() == "my test name"
+        assert results[0].getTestClass() == "com.example.Test"
+        assert results[0].getResults().size() == 0
+
+        cleanup:
+        reader && reader.close()
+    }
+
+    def "per test versions are read and applied to results"() {
+        when:
+        def permutation = new PermutationResult.Verified().setParameters([a: "1"]).setResults([out: "x"])
+        def out = new StringWriter()
+        def writer = new ResultsWriter()
+        writer.writeWarning(out)
+        writer.writeTest("com.example.Test", "with version", "abc123", [permutation], out)
+        writer.writeTest("com.example.Test", "without version", null, [permutation], out)
+        out.append("\n# Test Version: \"def456\" #")
+
+        def results = new ResultsReader().read("com.example.Test", new StringReader(out.toString()))
+
+        then:
+        results.size() == 2
+        results[0].getTestHash() == "abc123"
+        results[0].getResults()[0].getTestHash() == "abc123"
+        results[1].getTestHash() == null
+        results[1].getResults()[0].getTestHash() == "def456"
+    }
+
+    @Unroll
+    def "cached negative results are written and read back: tables=#tables"() {
+        when:
+        def tableParameters = tables ? ["b"] as Set : [] as Set
+        def skipped = new PermutationResult.Invalid("skip reason").setParameters([a: "1", b: "2"]).setTableParameters(tableParameters).setResults([out: "x"]).setCachedAt(1000L)
+        def unverified = new PermutationResult.Unverified("cannot verify").setParameters([a: "1", b: "3"]).setTableParameters(tableParameters).setResults([out: "y"]).setCachedAt(2000L)
+        def notCached = new PermutationResult.Invalid("not cached").setParameters([a: "1", b: "4"]).setTableParameters(tableParameters)
+        def out = new StringWriter()
+        new ResultsWriter().write("com.example.Test", "cached test", [skipped, unverified, notCached], out)
+
+        def results = new ResultsReader().read("com.example.Test", new StringReader(out.toString()))[0].getResults()
+
+        then:
+        results.size() == 2
+        !results[0].isValid()
+        results[0].getNotVerifiedMessage() == "skip reason"
+        results[0].getCachedAt() == 1000L
+        results[0].getResults() == [out: "x"]
+        results[1].isValid()
+        !results[1].isVerified()
+        results[1].getNotVerifiedMessage() == "cannot verify"
+        results[1].getCachedAt() == 2000L
+
+        where:
+        tables << [false, true]
+    }
+
+    @Unroll
+    def "only known internal parameters are read: tables=#tables"() {
+        when:
+        def tableParameters = tables ? ["b"] as Set : [] as Set
+        def verified = new PermutationResult.Verified().setParameters([a: "1", b: "2"]).setTableParameters(tableParameters).setResults([out: "x"])
+                .setVerifiedAt(1000L).setVerifiedBy("other permutation")
+        def out = new StringWriter()
+        new ResultsWriter().write("com.example.Test", "internal test", [verified], out)
+
+        def result = new ResultsReader().read("com.example.Test", new StringReader(out.toString()))[0].getResults()[0]
+
+        then:
+        result.getVerifiedAt() == 1000L
+        result.getVerifiedBy() == "other permutation"
+
+        when:
+        new ResultsReader().read("com.example.Test", new StringReader(out.toString().replace("VERIFIED_BY", "UNKNOWN")))
+
+        then:
+        def e = thrown(RuntimeException)
+        e.message == "Unknown internal parameter UNKNOWN"
+
+        where:
+        tables << [false, true]
+    }
+
+    @Unroll
+    def "additive results are written and read back: tables=#tables"() {
+        when:
+        def tableParameters = tables ? ["b"] as Set : [] as Set
+        def permutation = new PermutationResult.Verified().setParameters([a: "1", b: "2"]).setTableParameters(tableParameters).setResults([out: "x"]).setAdditiveResults([diagnostic: "y", multi: "line 1\nline 2"])
+        def out = new StringWriter()
+        new ResultsWriter().write("com.example.Test", "additive test", [permutation], out)
+        out.append("\n# Test Version: \"abc123\" #")
+
+        def results = new ResultsReader().read("com.example.Test", new StringReader(out.toString()))[0].getResults()
+
+        then:
+        results.size() == 1
+        results[0].getResults() == [out: "x"]
+        results[0].getAdditiveResults() == [diagnostic: "y", multi: "line 1\nline 2"]
+
+        where:
+        tables << [false, true]
+    }
+
+    def "environments are read per test section"() {
+        when:
+        def permutation = new PermutationResult.Verified().setParameters([a: "1"]).setResults([out: "x"])
+        def out = new StringWriter()
+        def writer = new ResultsWriter()
+        writer.writeWarning(out)
+        writer.writeTest("com.example.Test", "my test", null, null, [permutation], out)
+        writer.writeTest("com.example.Test", "my test", "abc123", "db=a, jdk=1.8", [permutation], out)
+
+        def results = new ResultsReader().read("com.example.Test", new StringReader(out.toString()))
+
+        then:
+        out.toString().contains("## Environment: \"db=a, jdk=1.8\" ##")
+        results.size() == 2
+        results[0].getEnvironment() == null
+        results[1].getEnvironment() == "db=a, jdk=1.8"
+        results[1].getTestHash() == "abc123"
+        results[1].getResults().size() == 1
+    }
+
+    def "generated results are read back and written identically"() {
+        when:
+        def random = new Random(42)
+        def values = ["plain", "with | pipe", "a: b", "_x_: y", "**bold**: text", "multi\nline\n    indented", "\u00fcnicode \u2603", "null"]
+        def pick = { values[random.nextInt(values.size())] }
+
+        def out = new StringWriter()
+        def writer = new ResultsWriter()
+        writer.writeWarning(out)
+        def expected = [:]
+        for (int test = 0; test < 200; test++) {
+            def tableParameters = test % 2 == 0 ? ["b", "c"] as Set : [] as Set
+            def results = []
+            for (int i = 0; i < 10; i++) {
+                def result
+                switch (random.nextInt(3)) {
+                    case 0: result = new PermutationResult.Verified(); break
+                    case 1: result = new PermutationResult.Unverified("cannot verify: " + i); break
+                    default: result = new PermutationResult.Invalid("skipped " + i).setCachedAt(1000L + i)
+                }
+                result.setParameters([a: "test " + test, b: "p" + i + pick(), c: pick()]).setTableParameters(tableParameters)
+                        .setResults([out: pick(), other: pick()]).setAdditiveResults(random.nextBoolean() ? [extra: pick()] : [:])
+                        .setNotes(random.nextBoolean() ? [note: pick()] : [:])
+                results.add(result)
+            }
+            writer.writeTest("com.example.Test", "test " + test, test % 3 == 0 ? "hash" + test : null, test % 5 == 0 ? "db=x" : null, results, out)
+            expected["test " + test] = results
+        }
+        out.append("\n# Test Version: \"abc123\" #")
+
+        def read = new ResultsReader().read("com.example.Test", new StringReader(out.toString()))
+        def rewritten = new StringWriter()
+        writer.writeWarning(rewritten)
+        for (def results : read) {
+            writer.writeTest("com.example.Test", results.getTestName(), results.getTestHash(), results.getEnvironment(), results.getResults(), rewritten)
+        }
+        rewritten.append("\n# Test Version: \"abc123\" #")
+
+        def wrongTests = read.findAll { results ->
+            def test = results.getTestName().substring(5) as int
+            return results.getResults()*.key.sort(false) != expected[results.getTestName()].findAll { it.isSavable() }*.key.sort(false) ||
+                    results.getEnvironment() != (test % 5 == 0 ? "db=x" : null) ||
+                    results.getResults()*.testHash.unique() != [test % 3 == 0 ? "hash" + test : "abc123"]
+        }*.testName
+
+        then:
+        read*.testName == expected.keySet() as List
+        wrongTests == []
+        rewritten.toString().equals(out.toString())
+    }
+
+    @Unroll("#featureName: #resultsFile")
+    def "stored keys match the keys computed from the parameters"() {
+        when:
+        def reader = new InputStreamReader(openStream(resultsFile))
+        def results = new ResultsReader().read("com.example.Test", reader)*.results.flatten()
+
+        then:
+        results.size() > 0
+        results.every { it.getKey() == new PermutationResult.Verified().setParameters(it.getParameters()).getKey() }
+
+        cleanup:
+        reader && reader.close()
+
+        where:
+        resultsFile << ["complex.md", "complex_tables.md", "multiple_tests.md", "multiple_tests_tables.md"]
+    }
+
+    def openStream(fileName) {
+        fileName = "testmd/example_output/${fileName}"
+        def stream = this.class.classLoader.getResourceAsStream(fileName)
+        if (stream == null) {
+            fail("Could not open ${fileName}")
+        }
+
+        return stream;
+    }
+
+    @Unroll("#featureName: #resultsFile")
+    def "saved results can be read"() {
+        when:
+        def reader = new InputStreamReader(openStream(resultsFile))
+        def results = new ResultsReader().read("com.example.Test", reader)
+
+        then:
+        assertResultsSame(resultsFile, results, "com.example.Test", testName)
+
+        cleanup:
+        reader && reader.close()
+
+        where:
+        resultsFile | testName
+        "empty.md" | ["my test name"]
+        "complex.md" | ["complex test"]
+        "complex_tables.md" | ["complex test with tables"]
+        "multiple_tests.md" | ["multiple test", "multiple test: part 2"]
+        "multiple_tests_tables.md" | ["complex test with tables", "complex test with tables: part 2", "can snapshot all tables in catalog", "can snapshot all tables in schema"]
+    }
+
+    def assertResultsSame(String expectedFile, List<PreviousResults> actualResults, String testClass, List<String> testName) {
+        def writer = new ResultsWriter()
+        def actualString = new StringWriter()
+
+        def i = 0;
+        for (def testRun : actualResults) {
+            writer.write(testClass, testName[i++], testRun.getResults(), actualString)
+        }
+
+        def expectedStream = openStream(expectedFile)
+
+        try {
+            assert actualString.toString() == StringUtils.read(expectedStream)
+        } finally {
+            expectedStream.close()
+            actualString.close()
+        }
+
+        true
+    }
+}
@@ -0,0 +1,123 @@
+package testmd.storage
+
+import spock.lang.Specification
+import testmd.PermutationResult
+import testmd.PreviousResults
+
+import java.nio.file.Files
+
+class ResultsSidecarTest extends Specification {
+
+    File directory
+    File file
+
+    def setup() {
+        directory = Files.createTempDirectory("testmd-sidecar").toFile()
+        file = new File(directory, "Example.accepted.md")
+    }
+
+    def cleanup() {
+        directory.deleteDir()
+    }
+
+    def writeResults() {
+        def results = new PreviousResults("com.example.Example", "my test")
+        results.addResult(new PermutationResult.Verified().setParameters([p: "1"]).setResults([out: "x"]).setAdditiveResults([count: "1"]).setVerifiedAt(1000L).setVerifiedBy("bob"))
+        results.addResult(new PermutationResult.Unverified("cannot verify").setParameters([p: "2"]).setResults([out: "y"]))
+
+        def otherEnvironment = new PreviousResults("com.example.Example", "my test")
+        otherEnvironment.setEnvironment("db=mysql")
+        otherEnvironment.setTestHash("def456")
+        otherEnvironment.addResult(new PermutationResult.Verified().setParameters([p: "1"]).setResults([out: "z"]))
+
+        new ResultsWriter().write(file, "abc123", [results, otherEnvironment])
+        ResultsSidecar.write(file, "abc123", [results, otherEnvironment])
+    }
+
+    def key(String p) {
+        return new PermutationResult.Verified().setParameters([p: p]).getKey()
+    }
+
+    def "entries are found by test name, environment and key"() {
+        when:
+        writeResults()
+        def sidecar = ResultsSidecar.open(file)
+        def verified = sidecar.find("my test", null, key("1"))
+        def unverified = sidecar.find("my test", null, key("2"))
+        def otherEnvironment = sidecar.find("my test", "db=mysql", key("1"))
+
+        then:
+        sidecar.getFile() == new File(directory, "Example.accepted.idx")
+
+        verified.isVerified()
+        verified.resultsMatch([out: "x"], [count: "1"])
+        !verified.resultsMatch([out: "changed"], [count: "1"])
+        !verified.resultsMatch([out: "x"], [count: "2"])
+        verified.getTestHash() == "abc123"
+        verified.getVerifiedAt() == 1000L
+        verified.getVerifiedBy() == "bob"
+
+        !unverified.isVerified()
+        unverified.getVerifiedAt() == null
+        unverified.getVerifiedBy() == null
+
+        otherEnvironment.resultsMatch([out: "z"], [:])
+        otherEnvironment.getTestHash() == "def456"
+
+        sidecar.find("my test", null, key("3")) == null
+        sidecar.find("other test", null, key("1")) == null
+        sidecar.find("my test", "db=h2", key("1")) == null
+        (1..100).count { sidecar.mightContain("my test", null, key("missing " + it)) } < 20
+    }
+
+    def "index is stale when the accepted file changed"() {
+        when:
+        writeResults()
+        file.text = file.text.replace("bob", "joe")
+        file.setLastModified(file.lastModified() + 5000)
+
+        then:
+        ResultsSidecar.open(file) == null
+
+        when:
+        file.text = file.text + "\n"
+
+        then:
+        ResultsSidecar.open(file) == null
+    }
+
+    def "index is used when only the last modified time changed"() {
+        when:
+        writeResults()
+        file.setLastModified(file.lastModified() + 5000)
+
+        then:
+        ResultsSidecar.open(file).find("my test", null, key("1")).isVerified()
+    }
+
+    def "open index does not keep the index file in use"() {
+        when:
+        writeResults()
+        def sidecar = ResultsSidecar.open(file)
+        ResultsSidecar.getSidecarFile(file).text = ""
+
+        then:
+        ResultsSidecar.getSidecarFile(file).delete()
+        sidecar.find("my test", null, key("1")).isVerified()
+    }
+
+    def "missing or corrupt index is not used"() {
+        when:
+        writeResults()
+        ResultsSidecar.getSidecarFile(file).delete()
+
+        then:
+        ResultsSidecar.open(file) == null
+
+        when:
+        ResultsSidecar.getSidecarFile(file).bytes = [1, 2, 3] as byte[]
+
+        then:
+        ResultsSidecar.open(file) == null
+    }
+}
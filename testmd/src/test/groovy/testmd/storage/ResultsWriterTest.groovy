@@ -44,6 +44,28 @@ class ResultsWriterTest extends Specification {
         out && out.close()
     }
 
+    def "table cells are escaped and rows with the same cells are written once"() {
+        when:
+        def tableParameters = ["col"] as Set
+        def escaped = new PermutationResult.Verified().setParameters([group: "g", col: "a|b"]).setTableParameters(tableParameters).setResults([out: "x\r\ny"])
+        def multiLine = new PermutationResult.Verified().setParameters([group: "g", col: "a\nb"]).setTableParameters(tableParameters).setNotes([n: "z"]).setResults([out: "1"])
+        def replaced = new PermutationResult.Verified().setParameters([group: "g", col: "c"]).setTableParameters(tableParameters).setResults([out: "dup"])
+        def noOperations = new PermutationResult.Unverified(null).setParameters([group: "g", col: " c "]).setTableParameters(tableParameters)
+
+        def out = new StringWriter()
+        new ResultsWriter().printWithTables([escaped, multiLine, replaced, noOperations], out)
+
+        then:
+        out.toString() == "- **group:** g\n" +
+                "\n" +
+                "| Permutation | Verified | col | OPERATIONS\n" +
+                "| :---------- | :------- | :-- | :------\n" +
+                "| ${StringUtils.pad(escaped.getKey(), 11)} | true     | a&#124;b | **out**: x<br>y\n" +
+                "| ${StringUtils.pad(multiLine.getKey(), 11)} | true     | a<br>b | __n__: z\n" +
+                "|             |          |     | **out**: 1\n" +
+                "| ${StringUtils.pad(noOperations.getKey(), 11)} | false    | c   |"
+    }
+
     def createComplexPermutations() {
         def results = new ArrayList<PermutationResult>()
 
@@ -0,0 +1,105 @@
+package testmd.storage
+
+import com.example.ExampleJUnitTest
+import com.example.ExampleSpockTest
+import spock.lang.Specification
+
+import java.nio.file.Files
+
+class SkipAnalyzerTest extends Specification {
+
+    File resultsDirectory
+
+    def setup() {
+        resultsDirectory = Files.createTempDirectory("testmd-skip").toFile()
+    }
+
+    def cleanup() {
+        resultsDirectory.deleteDir()
+    }
+
+    def createAnalyzer() {
+        def analyzer = new SkipAnalyzer(this.class.classLoader, resultsDirectory)
+        analyzer.hashMode = TestManager.HashMode.BYTECODE
+        analyzer.environment = null
+        analyzer.forceRun = false
+        analyzer.plan = false
+        analyzer.reverify = false
+        return analyzer
+    }
+
+    def writeAcceptedFile(String hash, Closure<String> modify = { it }) {
+        def original = getClass().getResource("/com/example/ExampleJUnitTest.accepted.md").getText("UTF-8")
+        def file = new File(resultsDirectory, "com/example/ExampleJUnitTest.accepted.md")
+        file.parentFile.mkdirs()
+        file.setText(modify(original.replaceFirst('# Test Version: ".*" #', "# Test Version: \"$hash\" #")), "UTF-8")
+    }
+
+    def currentHash() {
+        return new BytecodeHasher(this.class.classLoader).computeHash(ExampleJUnitTest.name)
+    }
+
+    def "class with all tests verified under the current bytecode hash can be skipped"() {
+        when:
+        writeAcceptedFile(currentHash())
+        def analyzer = createAnalyzer()
+
+        then:
+        analyzer.getRunReason(ExampleJUnitTest.name) == null
+        analyzer.findSkippable([ExampleJUnitTest.name, ExampleSpockTest.name]) == [ExampleJUnitTest.name]
+    }
+
+    def "class must run when the bytecode hash changed"() {
+        when:
+        writeAcceptedFile("000000")
+
+        then:
+        createAnalyzer().getRunReason(ExampleJUnitTest.name) == "test hash changed for insertingData"
+    }
+
+    def "class must run when a test has no saved results"() {
+        when:
+        writeAcceptedFile(currentHash(), { it.replace('# Test: "queryAPI" #', '# Test: "otherTest" #') })
+
+        then:
+        createAnalyzer().getRunReason(ExampleJUnitTest.name) == "no saved results for queryAPI"
+    }
+
+    def "class must run when a permutation is not verified"() {
+        when:
+        writeAcceptedFile(currentHash(), { it.replaceFirst(/\(verified\)/, "_NOT VERIFIED: Test message_") })
+
+        then:
+        createAnalyzer().getRunReason(ExampleJUnitTest.name) == "not all permutations in insertingData are verified"
+    }
+
+    def "class must run when there is no accepted file"() {
+        expect:
+        createAnalyzer().getRunReason(ExampleJUnitTest.name).startsWith("no accepted file")
+    }
+
+    def "no classes are skipped unless settings guarantee permutations would not run"() {
+        when:
+        writeAcceptedFile(currentHash())
+        def analyzer = createAnalyzer()
+        analyzer[property] = value
+
+        then:
+        analyzer.getRunReason(ExampleJUnitTest.name) == expected
+        analyzer.findSkippable([ExampleJUnitTest.name]) == []
+
+        where:
+        property      | value                      | expected
+        "hashMode"    | TestManager.HashMode.CLASS | "hash mode is CLASS, not BYTECODE"
+        "forceRun"    | true                       | "testmd.forceRun is set"
+        "plan"        | true                       | "testmd.plan is set"
+        "reverify"    | true                       | "re-verification is enabled"
+        "environment" | "db=mysql"                 | "no saved results for insertingData"
+    }
+
+    def "findTestNames returns JUnit methods and Spock feature names"() {
+        expect:
+        createAnalyzer().findTestNames(ExampleJUnitTest.name) == ["insertingData", "insertingDataFormattedAsTable", "insertingData_simple", "queryAPI"] as Set
+        createAnalyzer().findTestNames(ExampleSpockTest.name) == ["inserting data", "inserting data formatted as a table", "query APIs"] as Set
+    }
+}
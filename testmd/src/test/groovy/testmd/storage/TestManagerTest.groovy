@@ -0,0 +1,674 @@
+package testmd.storage
+
+import com.example.ExampleJUnitTest
+import org.junit.internal.AssumptionViolatedException
+import spock.lang.Specification
+import spock.lang.Unroll
+import testmd.Permutation
+import testmd.PermutationResult
+import testmd.PreviousResults
+import testmd.RunReason
+import testmd.logic.SetupResult
+
+import java.nio.file.Files
+
+class TestManagerTest extends Specification {
+
+    def "method hashes are computed per test method"() {
+        when:
+        def testManager = new TestManager(ExampleJUnitTest.name, ExampleJUnitTest, new ResultsReader(), null)
+        testManager.setHashMode(TestManager.HashMode.METHOD)
+
+        then:
+        testManager.getCurrentTestHash(ExampleJUnitTest.name, "insertingData") ==~ /[0-9a-f]{6}/
+        testManager.getCurrentTestHash(ExampleJUnitTest.name, "insertingData") != testManager.getCurrentTestHash(ExampleJUnitTest.name, "queryAPI")
+    }
+
+    @Unroll
+    def "method hash changes with the rest of the class but not with other test methods: #change"() {
+        when:
+        def original = new File("src/test/java/com/example/ExampleJUnitTest.java").text
+        def methodHash = { String source ->
+            def sourceFile = File.createTempFile("ExampleJUnitTest", ".java")
+            sourceFile.deleteOnExit()
+            sourceFile.text = source
+            def testManager = new TestManager(ExampleJUnitTest.name, ExampleJUnitTest, new ResultsReader(), null) {
+                @Override
+                protected File getClassSource(Class clazz) {
+                    return clazz == ExampleJUnitTest ? sourceFile : null
+                }
+            }
+            return testManager.readMethodHash("queryAPI")
+        }
+
+        then:
+        original.contains(from)
+        (methodHash(original.replace(from, to)) != methodHash(original)) == changed
+
+        where:
+        change                   | from                                                   | to                                                             | changed
+        "test method"            | "new Object[]{\"cars\", 4},"                           | "new Object[]{\"cars\", 5},"                                   | true
+        "helper method"          | "System.out.println(\"Executing \" + query"            | "System.err.println(\"Executing \" + query"                    | true
+        "field"                  | "private Connection connection;"                       | "private Connection connection = null;"                        | true
+        "other test method"      | "public void insertingData() throws Exception {"        | "public void insertingData() throws Exception {\n int x = 1;"  | false
+        "formatting and comment" | "private void openConnection() {"                      | "// opens it\n    private   void openConnection() {"           | false
+    }
+
+    def "method hash falls back to class hash when the method cannot be found"() {
+        when:
+        def testManager = new TestManager(ExampleJUnitTest.name, ExampleJUnitTest, new ResultsReader(), null)
+        testManager.setHashMode(TestManager.HashMode.METHOD)
+        testManager.init()
+
+        then:
+        testManager.getCurrentTestHash(ExampleJUnitTest.name, "not a method") == testManager.getCurrentTestHash(ExampleJUnitTest.name)
+    }
+
+    def "bytecode mode hashes the compiled test class"() {
+        when:
+        def testManager = new TestManager(ExampleJUnitTest.name, ExampleJUnitTest, new ResultsReader(), null)
+        testManager.setHashMode(TestManager.HashMode.BYTECODE)
+
+        then:
+        testManager.readTestHash() == new BytecodeHasher(this.class.classLoader).computeHash(ExampleJUnitTest.name)
+        testManager.readTestHash() != null
+    }
+
+    @Unroll
+    def "failed permutations keep previous results when partialSave=#partialSave"() {
+        when:
+        def written = null
+        def writer = new ResultsWriter() {
+            @Override
+            void write(File file, String testHash, Collection<PreviousResults> results) {
+                written = results
+            }
+        }
+        def testManager = new TestManager("com.example.PartialTest", TestManagerTest, new ResultsReader(), writer) {
+            @Override
+            protected void scheduleWriteResults() {
+            }
+        }
+        testManager.setPartialSave(partialSave)
+
+        def previous = new PreviousResults("com.example.PartialTest", "my test")
+        previous.addResult(new PermutationResult.Verified().setParameters([a: "failing"]).setResults([out: "previous"]))
+        loadedPreviousResults(testManager).put("my test", previous)
+
+        def passing = new Permutation("com.example.PartialTest", "my test", [a: "passing"]).addOperation("out", "new")
+        testManager.addPermutation("my test", passing)
+        passing.run({})
+
+        def failing = new Permutation("com.example.PartialTest", "my test", [a: "failing"]).addOperation("out", "changed")
+        testManager.addPermutation("my test", failing)
+        try {
+            failing.run({ assert false })
+        } catch (AssertionError ignored) {
+        }
+
+        def neverRan = new Permutation("com.example.PartialTest", "my test", [a: "new failure"]).addOperation("out", "new")
+        testManager.addPermutation("my test", neverRan)
+        try {
+            neverRan.run({ throw new RuntimeException("error") })
+        } catch (RuntimeException ignored) {
+        }
+
+        testManager.writeResults()
+
+        then:
+        if (partialSave) {
+            def results = written[0].getResults().sort(false) { it.getParameters().a }
+            assert results.size() == 2
+            assert results[0].getParameters() == [a: "failing"]
+            assert !results[0].isVerified()
+            assert results[0].getNotVerifiedMessage() == "Failed on last run"
+            assert results[0].getResults() == [out: "previous"]
+            assert results[1].getParameters() == [a: "passing"]
+            assert results[1].isVerified()
+        } else {
+            assert written == null
+        }
+
+        where:
+        partialSave << [true, false]
+    }
+
+    def "results written while permutations are still running keep what was saved for them"() {
+        when:
+        def written = null
+        def writer = new ResultsWriter() {
+            @Override
+            void write(File file, String testHash, Collection<PreviousResults> results) {
+                written = results
+            }
+        }
+        def scheduled = 0
+        def testManager = new TestManager("com.example.RunningTest", TestManagerTest, new ResultsReader(), writer) {
+            @Override
+            protected void scheduleWriteResults() {
+                scheduled++
+            }
+        }
+
+        def saved = { String testName, Map parameters ->
+            def previous = new PreviousResults("com.example.RunningTest", testName)
+            previous.addResult(new PermutationResult.Verified().setParameters(parameters).setResults([out: "previous"]))
+            loadedPreviousResults(testManager).put(testName, previous)
+        }
+        saved("finished test", [a: "1"])
+        saved("running test", [b: "1"])
+        saved("new key test", [c: "1"])
+        saved("removed test", [d: "1"])
+
+        def finished = new Permutation("com.example.RunningTest", "finished test", [a: "1"]).addOperation("out", "new")
+        testManager.addPermutation("finished test", finished)
+        finished.run({})
+        testManager.addPermutation("running test", new Permutation("com.example.RunningTest", "running test", [b: "1"]).addOperation("out", "new"))
+        testManager.addPermutation("new key test", new Permutation("com.example.RunningTest", "new key test", [c: "2"]).addOperation("out", "new"))
+
+        testManager.writeResults()
+        def results = written.collectEntries { [(it.getTestName()): it.getResults().collect { it.getParameters() + it.getResults() }] }
+
+        then:
+        results == [
+                "finished test": [[a: "1", out: "new"]],
+                "running test" : [[b: "1", out: "previous"]],
+                "new key test" : [[c: "1", out: "previous"]],
+        ]
+
+        when:
+        def running = new Permutation("com.example.RunningTest", "after flush", [e: "1"]).addOperation("out", "new")
+        testManager.addPermutation("after flush", running)
+        def scheduledBefore = scheduled
+        running.run({})
+
+        then:
+        scheduled > scheduledBefore
+    }
+
+    def "results carried over from a previous run keep the test hash they were verified with"() {
+        when:
+        def written = null
+        def writer = new ResultsWriter() {
+            @Override
+            void write(File file, String testHash, Collection<PreviousResults> results) {
+                written = results
+            }
+        }
+        def testManager = new TestManager("com.example.CarriedTest", TestManagerTest, new ResultsReader(), writer) {
+            @Override
+            String getCurrentTestHash(String testGroup) {
+                return "bbbbbb"
+            }
+
+            @Override
+            protected void scheduleWriteResults() {
+            }
+        }
+        for (def testName : ["changed test", "waiting test"]) {
+            def previous = new PreviousResults("com.example.CarriedTest", testName)
+            for (def p : ["1", "2"]) {
+                def result = new PermutationResult.Verified().setParameters([p: p]).setResults([out: "previous"])
+                result.setTestHash("aaaaaa")
+                previous.addResult(result)
+            }
+            loadedPreviousResults(testManager).put(testName, previous)
+        }
+
+        def ran = new Permutation("com.example.CarriedTest", "changed test", [p: "1"]).addOperation("out", "new")
+        testManager.addPermutation("changed test", ran)
+        ran.run({})
+        testManager.addPermutation("changed test", new Permutation("com.example.CarriedTest", "changed test", [p: "2"]).addOperation("out", "new"))
+        testManager.addPermutation("waiting test", new Permutation("com.example.CarriedTest", "waiting test", [p: "1"]).addOperation("out", "new"))
+
+        testManager.writeResults()
+        def sections = written.collectEntries { [(it.getTestName()): it] }
+
+        then:
+        ran.getRunReason() == RunReason.HASH_CHANGED
+        sections["changed test"].getTestHash() == null
+        sections["changed test"].getResults().collect { it.getParameters() + it.getResults() } == [[p: "1", out: "new"]]
+        sections["waiting test"].getTestHash() == "aaaaaa"
+        sections["waiting test"].getResults().size() == 2
+    }
+
+    def "previous results are migrated for parameter aliases and defaults"() {
+        when:
+        def testManager = createTestManager("com.example.MigrationTest", [
+                new PermutationResult.Verified().setParameters([oldName: "a", other: "1"]).setTableParameters(["other"] as Set).setResults([out: "x"]),
+                new PermutationResult.Verified().setParameters([oldName: "b", other: "2"]).setTableParameters(["other"] as Set).setResults([out: "y"]),
+        ])
+        loadedPreviousResults(testManager).get("my test").setEnvironment("pg")
+
+        def builder = testManager.getBuilder("my test")
+                .withParameterAlias("oldName", "newName")
+                .withParameterDefault("added", "none")
+                .withParameterDefault("other", 2)
+
+        def permutationA = builder.withPermutation([newName: "a", other: 1, added: "none"])
+        def permutationB = builder.withPermutation([newName: "b", other: 2, added: "none"])
+        def permutationC = builder.withPermutation([newName: "a", other: 1, added: "something"])
+
+        then:
+        permutationA.getParameters().keySet() == ["newName", "other"] as Set
+        permutationB.getParameters().keySet() == ["newName"] as Set
+        testManager.getPreviousResult("my test", permutationA).getResults() == [out: "x"]
+        testManager.getPreviousResult("my test", permutationA).getTableParameters() == ["other"] as SortedSet
+        testManager.getPreviousResult("my test", permutationB).getResults() == [out: "y"]
+        testManager.getPreviousResult("my test", permutationC) == null
+        loadedPreviousResults(testManager).get("my test").getEnvironment() == "pg"
+    }
+
+    def "results are partitioned by environment"() {
+        when:
+        def file = File.createTempFile("environments", ".accepted.md")
+        def out = new StringWriter()
+        def resultsWriter = new ResultsWriter()
+        resultsWriter.writeWarning(out)
+        resultsWriter.writeTest("com.example.EnvironmentTest", "my test", null, "db=a", [new PermutationResult.Verified().setParameters([p: "1"]).setResults([out: "in a"])], out)
+        resultsWriter.writeTest("com.example.EnvironmentTest", "my test", null, "db=b", [new PermutationResult.Verified().setParameters([p: "1"]).setResults([out: "in b"])], out)
+        out.append("\n# Test Version: \"oldhash\" #")
+        file.text = out.toString()
+
+        def written = null
+        def writer = new ResultsWriter() {
+            @Override
+            void write(File outputFile, String testHash, Collection<PreviousResults> results) {
+                written = results
+            }
+        }
+        def testManager = new TestManager("com.example.EnvironmentTest", TestManagerTest, new ResultsReader(), writer) {
+            @Override
+            protected File getOutputFile() {
+                return file
+            }
+
+            @Override
+            protected void scheduleWriteResults() {
+            }
+        }
+        testManager.setEnvironment(" db = a ")
+        testManager.init()
+
+        def permutation = testManager.getBuilder("my test").withPermutation([p: 1]).addOperation("out", "in a")
+        def previous = testManager.getPreviousResult("my test", permutation)
+        permutation.forceRun().run({})
+        testManager.writeResults()
+
+        then:
+        testManager.getEnvironment() == "db=a"
+        previous.getResults() == [out: "in a"]
+        written.size() == 2
+        written[0].getEnvironment() == "db=a"
+        written[1].getEnvironment() == "db=b"
+        written[1].getTestHash() == "oldhash"
+        written[1].getResults()[0].getResults() == [out: "in b"]
+
+        cleanup:
+        file.delete()
+    }
+
+    @Unroll
+    def "canonicalizeEnvironment: #input"() {
+        expect:
+        TestManager.canonicalizeEnvironment(input) == expected
+
+        where:
+        input                   | expected
+        null                    | null
+        "  "                    | null
+        "oracle 12c"            | "oracle 12c"
+        "jdk=1.8, db=postgres"  | "db=postgres, jdk=1.8"
+        "jdk=1.8,db = postgres" | "db=postgres, jdk=1.8"
+        "jdk=1.8, postgres"     | "jdk=1.8, postgres"
+    }
+
+    /**
+     * Returns the previous results the given TestManager has loaded so far, by test name.
+     */
+    static Map<String, PreviousResults> loadedPreviousResults(TestManager testManager) {
+        def previousResultsField = TestManager.getDeclaredField("previousResults")
+        previousResultsField.setAccessible(true)
+        return (Map<String, PreviousResults>) previousResultsField.get(testManager)
+    }
+
+    /**
+     * Creates a TestManager with the given results already loaded as the previous results of "my test".
+     */
+    def createTestManager(String testGroup, List<PermutationResult> results) {
+        def testManager = new TestManager(testGroup, TestManagerTest, new ResultsReader(), null)
+        def previous = new PreviousResults(testGroup, "my test")
+        for (def result : results) {
+            previous.addResult(result)
+        }
+        loadedPreviousResults(testManager).put("my test", previous)
+        return testManager
+    }
+
+    @Unroll
+    def "oldest verified results are selected for reverification: count=#count budget=#budget"() {
+        when:
+        def verifiedAts = [null, 100L, 200L, 300L, 300L]
+        def results = (0..<verifiedAts.size()).collect { new PermutationResult.Verified().setParameters([p: "$it".toString()]).setVerifiedAt(verifiedAts[it]) }
+        def unverified = new PermutationResult.Unverified("not verified").setParameters([p: "unverified"])
+        def testManager = createTestManager("com.example.ReverifyTest", results + [unverified])
+        testManager.setReverifyCount(count)
+        testManager.setReverifyBudget(budget)
+
+        then:
+        results.findIndexValues { testManager.shouldReverify(it) } == expected
+        !testManager.shouldReverify(unverified)
+
+        where:
+        count | budget | expected
+        null  | null   | []
+        2     | null   | [0, 1]
+        10    | null   | [0, 1, 2, 3, 4]
+        null  | 60L    | [0, 1, 2]
+    }
+
+    def "no results are reverified once the budget is used"() {
+        when:
+        def result = new PermutationResult.Verified().setParameters([p: "1"])
+        def testManager = createTestManager("com.example.ReverifyTest", [result])
+        testManager.setReverifyBudget(2L)
+
+        then:
+        testManager.shouldReverify(result)
+
+        when:
+        testManager.addReverifyTime(2000)
+
+        then:
+        !testManager.shouldReverify(result)
+    }
+
+    @Unroll
+    def "unchanged permutations are verified again when selected: count=#count"() {
+        when:
+        def previous = new PermutationResult.Verified().setParameters([p: "1"]).setResults([out: "x"]).setVerifiedAt(100L)
+        def testManager = createTestManager("com.example.ReverifyTest", [previous])
+        testManager.setReverifyCount(count)
+        def ran = 0
+        def permutation = testManager.getBuilder("my test").withPermutation([p: "1"]).addOperation("out", "x")
+        permutation.run({ ran++ })
+
+        then:
+        ran == expectedRuns
+        permutation.getTestResult().isVerified()
+        (permutation.getTestResult().getVerifiedAt() > 100L) == (expectedRuns == 1)
+        (permutation.getTestResult().getVerifiedAt() == 100L) == (expectedRuns == 0)
+
+        where:
+        count | expectedRuns
+        null  | 0
+        1     | 1
+    }
+
+    @Unroll
+    def "permutations with identical operations are verified once: #verifyOnce"() {
+        when:
+        def testManager = new TestManager("com.example.VerifyOnceTest", TestManagerTest, new ResultsReader(), null)
+        testManager.setVerifyOnce(verifyOnce)
+        def otherGroupManager = new TestManager("com.example.OtherVerifyOnceTest", TestManagerTest, new ResultsReader(), null)
+        otherGroupManager.setVerifyOnce(verifyOnce)
+
+        def ran = []
+        def operation = "select * from table_" + verifyOnce
+        def run = { TestManager manager, String testName, Map parameters, String sql ->
+            def permutation = manager.getBuilder(testName).withPermutation(parameters).addOperation("sql", sql)
+            permutation.run({ ran.add(testName + " " + parameters) })
+            return permutation.getTestResult()
+        }
+
+        def first = run(testManager, "test 1", [p: 1], operation)
+        def sameOperations = run(testManager, "test 1", [p: 2], operation)
+        def differentOperations = run(testManager, "test 1", [p: 3], operation + " where x=1")
+        def otherTest = run(testManager, "test 2", [p: 1], operation)
+        def otherGroup = run(otherGroupManager, "test 1", [p: 1], operation)
+
+        then:
+        ran == expectedRuns
+        [first, sameOperations, differentOperations, otherTest, otherGroup]*.isVerified() == [true, true, true, true, true]
+        first.getVerifiedBy() == null
+        (sameOperations.getVerifiedBy() != null) == (verifyOnce != TestManager.VerifyOnce.OFF)
+        sameOperations.getVerifiedBy() == null || sameOperations.getVerifiedBy().startsWith("com.example.VerifyOnceTest / test 1 / ")
+
+        where:
+        verifyOnce                     | expectedRuns
+        TestManager.VerifyOnce.OFF     | ["test 1 [p:1]", "test 1 [p:2]", "test 1 [p:3]", "test 2 [p:1]", "test 1 [p:1]"]
+        TestManager.VerifyOnce.TEST    | ["test 1 [p:1]", "test 1 [p:3]", "test 2 [p:1]", "test 1 [p:1]"]
+        TestManager.VerifyOnce.GROUP   | ["test 1 [p:1]", "test 1 [p:3]", "test 1 [p:1]"]
+        TestManager.VerifyOnce.GLOBAL  | ["test 1 [p:1]", "test 1 [p:3]"]
+    }
+
+    def "results verified by an equivalent permutation are saved"() {
+        when:
+        def written = null
+        def writer = new ResultsWriter() {
+            @Override
+            void write(File file, String testHash, Collection<PreviousResults> results) {
+                written = results
+            }
+        }
+        def testManager = new TestManager("com.example.EquivalentTest", TestManagerTest, new ResultsReader(), writer) {
+            @Override
+            protected void scheduleWriteResults() {
+            }
+        }
+        testManager.setVerifyOnce(TestManager.VerifyOnce.GROUP)
+        def previous = new PreviousResults("com.example.EquivalentTest", "my test")
+        previous.addResult(new PermutationResult.Verified().setParameters([p: "1"]).setResults([sql: "select 1"]))
+        loadedPreviousResults(testManager).put("my test", previous)
+
+        def ran = []
+        for (def p : ["1", "2"]) {
+            testManager.getBuilder("my test").withPermutation([p: p]).addOperation("sql", "select 1").run({ ran.add(p) })
+        }
+        testManager.writeResults()
+
+        then:
+        ran == []
+        written != null
+        def results = written[0].getResults().sort(false) { it.getParameters().p }
+        results*.getParameters() == [[p: "1"], [p: "2"]]
+        results[0].getVerifiedBy() == null
+        results[1].getVerifiedBy().startsWith("com.example.EquivalentTest / my test / ")
+    }
+
+    def "permutations whose test hash changed are only verified by permutations that ran"() {
+        when:
+        def testManager = new TestManager("com.example.ChangedVerifyOnceTest", TestManagerTest, new ResultsReader(), null) {
+            @Override
+            String getCurrentTestHash(String testGroup, String testName) {
+                return testName == "changed test" ? "bbbbbb" : "aaaaaa"
+            }
+        }
+        testManager.setVerifyOnce(TestManager.VerifyOnce.GROUP)
+        for (def testName : ["unchanged test", "changed test"]) {
+            def result = new PermutationResult.Verified().setParameters([p: "1"]).setResults([sql: "select 1"])
+            result.setTestHash("aaaaaa")
+            def previous = new PreviousResults("com.example.ChangedVerifyOnceTest", testName)
+            previous.addResult(result)
+            loadedPreviousResults(testManager).put(testName, previous)
+        }
+
+        def ran = []
+        def run = { String testName ->
+            def permutation = testManager.getBuilder(testName).withPermutation([p: "1"]).addOperation("sql", "select 1")
+            permutation.run({ ran.add(testName) })
+            return permutation
+        }
+        def unchanged = run("unchanged test")
+        def changed = run("changed test")
+
+        then:
+        unchanged.getRunReason() == RunReason.UNCHANGED
+        changed.getRunReason() == RunReason.HASH_CHANGED
+        changed.getTestResult().getVerifiedBy() == null
+        ran == ["changed test"]
+    }
+
+    def "plan mode reports why permutations would run without running them"() {
+        when:
+        def testManager = createTestManager("com.example.PlanTest", [
+                new PermutationResult.Verified().setParameters([p: "unchanged"]).setResults([out: "x"]),
+                new PermutationResult.Verified().setParameters([p: "changed"]).setResults([out: "x"]),
+                new PermutationResult.Unverified("cannot verify").setParameters([p: "unverified"]).setResults([out: "x"]),
+        ])
+        testManager.setPlan(true)
+
+        def called = []
+        def reasons = [:]
+        for (def p : ["unchanged", "changed", "unverified", "new"]) {
+            def permutation = testManager.getBuilder("my test").withPermutation([p: p])
+                    .addOperation("out", p == "changed" ? "y" : "x")
+                    .setup({ called.add("setup"); throw SetupResult.OK })
+                    .cleanup({ called.add("cleanup") })
+            permutation.run({ called.add("verification") })
+            reasons[p] = permutation.getRunReason()
+        }
+
+        def out = new StringWriter()
+        PlanReport.getInstance().write(out)
+
+        then:
+        called == []
+        reasons == [unchanged: RunReason.UNCHANGED, changed: RunReason.OPERATIONS_CHANGED, unverified: RunReason.NOT_VERIFIED, new: RunReason.NEW_PERMUTATION]
+        out.toString().contains("- **Permutations:** 4\n- **Would run:** 3\n")
+        out.toString().contains("| Operations changed since last verification | yes | 1 |")
+        out.toString().contains("| com.example.PlanTest | my test | ")
+        out.toString().contains(" | New permutation | p=new |")
+
+        cleanup:
+        PlanReport.getInstance().clear()
+    }
+
+    def createChangedFilesTestManager(List<String> changedFiles, TestManager.HashMode hashMode, List<String> scheduled) {
+        def testManager = new TestManager(ExampleJUnitTest.name, ExampleJUnitTest, new ResultsReader(), new ResultsWriter()) {
+            @Override
+            protected ChangeSelector getChangeSelector() {
+                return new ChangeSelector(changedFiles)
+            }
+
+            @Override
+            protected void scheduleWriteResults() {
+                if (!isUntouched()) {
+                    scheduled.add(getTestGroup())
+                }
+            }
+        }
+        testManager.setHashMode(hashMode)
+        testManager.init()
+        return testManager
+    }
+
+    @Unroll
+    def "test groups untouched by changed files do not load results or run: #changedFiles #hashMode"() {
+        when:
+        def scheduled = []
+        def testManager = createChangedFilesTestManager(changedFiles, hashMode, scheduled)
+        def called = []
+        def skipped = null
+        try {
+            testManager.getBuilder("insertingData").withPermutation([p: "new"])
+                    .addOperation("out", "x")
+                    .run({ called.add("verification") })
+        } catch (AssumptionViolatedException e) {
+            skipped = e.getMessage()
+        }
+
+        then:
+        skipped == (affected ? null : "Test group " + ExampleJUnitTest.name + " is untouched by changed files")
+        testManager.isUntouched() == !affected
+        loadedPreviousResults(testManager).isEmpty() == !affected
+        scheduled.unique() == (affected ? [ExampleJUnitTest.name] : [])
+        called == (affected ? ["verification"] : [])
+
+        where:
+        changedFiles                                                    | hashMode                        | affected
+        ["src/test/groovy/com/example/ExampleSpockTest.groovy"]         | TestManager.HashMode.CLASS      | false
+        ["src/test/resources/com/example/ExampleSpockTest.accepted.md"] | TestManager.HashMode.CLASS      | false
+        ["src/test/java/com/example/ExampleJUnitTest.java"]             | TestManager.HashMode.CLASS      | true
+        ["src/test/resources/com/example/ExampleJUnitTest.accepted.md"] | TestManager.HashMode.CLASS      | true
+        ["src/test/java/com/example/ExampleLogic.java"]                 | TestManager.HashMode.CLASS      | true
+        ["src/test/java/com/example/ExampleLogic.java"]                 | TestManager.HashMode.BYTECODE   | true
+        ["src/main/java/testmd/storage/SkipAnalyzer.java"]              | TestManager.HashMode.BYTECODE   | false
+    }
+
+    def "accepted file sections are parsed when their test is first used"() {
+        when:
+        def testManager = new TestManager(ExampleJUnitTest.name, ExampleJUnitTest, new ResultsReader(), null)
+        testManager.init()
+        def previousResults = loadedPreviousResults(testManager)
+
+        then:
+        previousResults.isEmpty()
+
+        when:
+        def permutation = testManager.getBuilder("queryAPI").withPermutation([keywords: "x"])
+        testManager.getPreviousResult("queryAPI", permutation)
+
+        then:
+        previousResults.keySet() == ["queryAPI"] as Set
+
+        when:
+        testManager.loadAllPreviousResults()
+
+        then:
+        previousResults.keySet() == ["insertingData", "insertingDataFormattedAsTable", "insertingData_simple", "queryAPI"] as Set
+    }
+
+    def "verified and unchanged permutations are found in the sidecar index without parsing the accepted file"() {
+        setup:
+        def directory = Files.createTempDirectory("testmd-sidecar").toFile()
+        def file = new File(directory, "ExampleJUnitTest.accepted.md")
+        def createTestManager = {
+            def testManager = new TestManager(ExampleJUnitTest.name, ExampleJUnitTest, new ResultsReader(), null) {
+                @Override
+                protected File getOutputFile() {
+                    return file
+                }
+            }
+            testManager.setSidecarIndex(true)
+            return testManager
+        }
+        def createPermutation = { TestManager testManager, String sql ->
+            testManager.getBuilder("insertingData")
+                    .withPermutation([columns: "address1, address2, city", table: "address", values: "121 Main, null, New Town"])
+                    .addOperation("sql", sql)
+        }
+        def sql = "INSERT INTO address (address1, address2, city) VALUES ('121 Main', NULL, 'New Town');"
+
+        when:
+        def firstManager = createTestManager()
+        def original = getClass().getResource("/com/example/ExampleJUnitTest.accepted.md").getText("UTF-8")
+        file.setText(original.replaceFirst('# Test Version: ".*" #', "# Test Version: \"${firstManager.readTestHash()}\" #"), "UTF-8")
+        firstManager.init()
+
+        then: "a missing index is built from the whole file"
+        ResultsSidecar.getSidecarFile(file).exists()
+        loadedPreviousResults(firstManager).size() == 4
+
+        when:
+        def testManager = createTestManager()
+        testManager.init()
+        def unchanged = testManager.getPreviousResult("insertingData", createPermutation(testManager, sql))
+
+        then:
+        unchanged.isVerified()
+        unchanged.getResults() == [sql: sql]
+        loadedPreviousResults(testManager).isEmpty()
+
+        when:
+        def changed = testManager.getPreviousResult("insertingData", createPermutation(testManager, "changed"))
+
+        then: "permutations the index cannot confirm are read from the accepted file"
+        changed.isVerified()
+        changed.getResults() == [sql: sql]
+        loadedPreviousResults(testManager).keySet() == ["insertingData"] as Set
+
+        cleanup:
+        directory.deleteDir()
+    }
+}
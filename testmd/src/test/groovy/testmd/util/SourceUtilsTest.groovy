@@ -0,0 +1,86 @@
+package testmd.util
+
+import spock.lang.Specification
+import spock.lang.Unroll
+
+class SourceUtilsTest extends Specification {
+
+    static javaSource = '''
+package com.example;
+
+public class MyTest {
+
+    @Test
+    public void firstTest() throws Exception {
+        String value = "firstTest() { not code }";
+        if (value != null) {
+            secondTest();
+        }
+    }
+
+    // commented out firstTest() {}
+
+    @Test
+    public void secondTest() {
+        char brace = '}';
+    }
+}
+'''
+
+    static groovySource = '''
+class MySpec extends Specification {
+
+    def "my feature"() {
+        expect:
+        [a: 1].each { it.value == 1 }
+    }
+
+    def 'other feature'() {
+        expect:
+        true
+    }
+}
+'''
+
+    @Unroll
+    def "findMethodSource finds declaration: #methodName"() {
+        expect:
+        SourceUtils.findMethodSource(source, methodName) == expected
+
+        where:
+        source       | methodName      | expected
+        javaSource   | "firstTest"     | 'public void firstTest() throws Exception { String value = "firstTest() { not code }"; if (value != null) { secondTest(); } }'
+        javaSource   | "secondTest"    | "public void secondTest() { char brace = '}'; }"
+        javaSource   | "missingTest"   | null
+        groovySource | "my feature"    | 'def "my feature"() { expect: [a: 1].each { it.value == 1 } }'
+        groovySource | "other feature" | "def 'other feature'() { expect: true }"
+        null         | "firstTest"     | null
+    }
+
+    def "findMethodSource ignores comments and formatting"() {
+        when:
+        def reformatted = javaSource.replace("String value", "// a new comment\n        String   value").replace("}\n    }", "}\n\n\n    }")
+
+        then:
+        SourceUtils.findMethodSource(reformatted, "firstTest") == SourceUtils.findMethodSource(javaSource, "firstTest")
+    }
+
+    @Unroll
+    def "removeMethods removes test methods: #methodNames"() {
+        expect:
+        SourceUtils.removeMethods(source, methodNames) == expected
+
+        where:
+        source       | methodNames                     | expected
+        javaSource   | ["firstTest", "secondTest"]     | "package com.example; public class MyTest { @Test @Test }"
+        javaSource   | ["secondTest"]                  | 'package com.example; public class MyTest { @Test public void firstTest() throws Exception { String value = "firstTest() { not code }"; if (value != null) { secondTest(); } } @Test }'
+        groovySource | ["my feature", "other feature"] | "class MySpec extends Specification { }"
+        null         | ["firstTest"]                   | null
+    }
+
+    def "removeMethods keeps changes outside the removed methods"() {
+        expect:
+        SourceUtils.removeMethods(javaSource.replace("char brace", "char   brace"), ["secondTest"]) == SourceUtils.removeMethods(javaSource, ["secondTest"])
+        SourceUtils.removeMethods(javaSource.replace("public class MyTest {", "public class MyTest {\n    private int field;"), ["firstTest", "secondTest"]) != SourceUtils.removeMethods(javaSource, ["firstTest", "secondTest"])
+    }
+}
@@ -120,6 +120,8 @@ class StringUtilsTest extends Specification {
         input | times | output
         "x"   | 3     | "xxx"
         "x"   | 0     | ""
+        "x"   | -1    | ""
+        "ab"  | 2     | "abab"
         null  | 3     | null
     }
 
@@ -129,10 +131,13 @@ class StringUtilsTest extends Specification {
         StringUtils.indent(input, depth) == output
 
         where:
-        input | depth | output
-        "x"   | 3     | "   x"
-        "x"   | 0     | "x"
-        null  | 3     | null
+        input     | depth | output
+        "x"       | 3     | "   x"
+        "x"       | 0     | "x"
+        "a\nb"    | 2     | "  a\n  b"
+        "a\n\nb\n" | 1     | " a\n \n b\n "
+        "a\r\nb"  | 1     | " a\r\n b"
+        null      | 3     | null
     }
 
     @Unroll